@@ -0,0 +1,398 @@
+// Benchmark.java
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Medições de desempenho, executadas à parte da interface:
+ * java Benchmark
+ */
+public class Benchmark {
+
+    public static void main(String[] args) throws IOException {
+        benchmarkFft();
+        benchmarkInterpreter();
+        benchmarkHistory();
+        benchmarkSeries();
+        benchmarkAstMemory();
+        benchmarkFunctions();
+    }
+
+    // Expressões escalares usadas para conferir e medir as formas de avaliação
+    static final String[] CORPUS = {
+            "1+2*3",
+            "2+3i",
+            "-x^2",
+            "(x+y)*(x-y)",
+            "x/y+y/x",
+            "sin(x)/cos(x)",
+            "tan(x)-sin(x)/cos(x)",
+            "exp(i*x)",
+            "log(x*y)",
+            "abs(x-y)+sqrt(4)",
+            "√9*x",
+            "sqrt(-2)+x",
+            "x^0.5+y^3",
+            "-(-x)",
+            "0-x",
+            "-x*0-y",
+            "((((x+1)*2-3)/4)^2)",
+            "sin(cos(tan(x)))",
+            "exp(log(x))-x",
+            "1/(1+exp(-x))",
+            "x*x*x*x*x-5*x*x*x+4*x",
+            "3.5-2i*y",
+            "cos(x)^2+sin(x)^2",
+            "abs(exp(i*y))",
+            // corpos válidos em todo o intervalo, mas não no valor provisório 0
+            "sum(k,1,3,k^(1/k))+x",
+            "prod(k,1,3,2^(1/k))*y",
+            "integrate(t^(1/t), t, 1, 2)+x",
+            "integrate(sqrt(1/t), t, 1, 2)",
+    };
+
+    // ==============================
+    // AST RECURSIVA x OPCODES
+    // ==============================
+    private static void benchmarkInterpreter() {
+        System.out.println("== Avaliação: parser recursivo x interpretador de opcodes ==");
+
+        Random rnd = new Random(7);
+        int mismatches = 0;
+        int checks = 0;
+        for (String expr : CORPUS) {
+            for (int trial = 0; trial < 200; trial++) {
+                Map<String, Complex> vars = new HashMap<>();
+                // metade das amostras é real, onde o sinal de zero da parte imaginária aparece
+                boolean real = trial % 2 == 0;
+                vars.put("x", new Complex(rnd.nextGaussian() * 3, real ? 0 : rnd.nextGaussian() * 3));
+                vars.put("y", new Complex(rnd.nextGaussian() * 3, real ? 0 : rnd.nextGaussian()));
+
+                ExpressionParser parser = new ExpressionParser(expr, vars);
+                Complex expected = parser.evaluate();
+                CompiledExpression compiled = parser.compile("x", "y");
+                Complex actual = compiled.evaluate(vars.get("x"), vars.get("y"));
+
+                checks++;
+                if (!sameBits(expected, actual)) {
+                    mismatches++;
+                    System.out.println("  DIFERENTE: " + expr + " -> " + expected + " x " + actual);
+                }
+            }
+        }
+        System.out.println("Conferência: " + checks + " avaliações, " + mismatches + " diferenças");
+
+        System.out.printf("%-32s %14s %14s %8s%n", "expressão", "parser (ns)", "opcodes (ns)", "ganho");
+        int iterations = 200_000;
+        for (String expr : CORPUS) {
+            Map<String, Complex> vars = new HashMap<>();
+            vars.put("x", new Complex(0.7, 0.2));
+            vars.put("y", new Complex(1.3, -0.4));
+
+            double parserMs = time(3, () -> {
+                for (int k = 0; k < iterations / 10; k++) {
+                    vars.put("x", new Complex(k * 1e-6, 0.2));
+                    new ExpressionParser(expr, vars).evaluate();
+                }
+            }) * 10;
+
+            ExpressionParser parser = new ExpressionParser(expr, vars);
+            parser.evaluate();
+            CompiledExpression compiled = parser.compile("x", "y");
+            CompiledExpression.Frame frame = compiled.newFrame();
+            frame.set(1, 1.3, -0.4);
+            double compiledMs = time(3, () -> {
+                for (int k = 0; k < iterations; k++) {
+                    frame.set(0, k * 1e-6, 0.2);
+                    frame.run();
+                }
+            });
+
+            System.out.printf("%-32s %14.1f %14.1f %7.1fx%n", expr,
+                    parserMs * 1e6 / iterations, compiledMs * 1e6 / iterations, parserMs / compiledMs);
+        }
+        System.out.println();
+    }
+
+    // ==============================
+    // HISTÓRICO MAPEADO EM MEMÓRIA
+    // ==============================
+    private static void benchmarkHistory() throws IOException {
+        System.out.println("== Histórico: gravação e recarga ==");
+        int entries = 1_000_000;
+        Path file = Files.createTempFile("historico", ".dat");
+        Files.delete(file);
+        try {
+            Map<String, Complex> vars = new HashMap<>();
+            long t0 = System.nanoTime();
+            try (HistoryStore store = HistoryStore.open(file)) {
+                for (int k = 0; k < entries; k++) {
+                    vars.put("x", new Complex(k, -k));
+                    store.append("sin(x)+" + k, vars, "resultado " + k, "(+ (sin x) " + k + ")");
+                }
+            }
+            double writeMs = (System.nanoTime() - t0) / 1e6;
+
+            t0 = System.nanoTime();
+            try (HistoryStore store = HistoryStore.open(file)) {
+                double openMs = (System.nanoTime() - t0) / 1e6;
+
+                t0 = System.nanoTime();
+                store.search("", 100);
+                double recentMs = (System.nanoTime() - t0) / 1e6;
+
+                // a primeira busca por prefixo espera o índice montado em segundo plano
+                t0 = System.nanoTime();
+                store.search("sin(x)+1", 100);
+                double firstMs = (System.nanoTime() - t0) / 1e6;
+
+                t0 = System.nanoTime();
+                int found = store.search("sin(x)+4242", 100).size();
+                double searchMs = (System.nanoTime() - t0) / 1e6;
+
+                System.out.printf("%d entradas, %.1f MB%n", store.size(), Files.size(file) / 1e6);
+                System.out.printf("gravação: %.1f ms (%.2f us/entrada)%n", writeMs, writeMs * 1e3 / entries);
+                System.out.printf("recarga:  %.1f ms%n", openMs);
+                System.out.printf("100 mais recentes: %.3f ms%n", recentMs);
+                System.out.printf("primeira busca por prefixo (com índice): %.1f ms%n", firstMs);
+                System.out.printf("busca por prefixo: %d resultados em %.3f ms%n", found, searchMs);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".idx"));
+        }
+        System.out.println();
+    }
+
+    // ==============================
+    // SOMATÓRIO COMPENSADO
+    // ==============================
+    private static void benchmarkSeries() {
+        System.out.println("== sum(k, 1, n, 1/k^2): compensado e paralelo x laço simples ==");
+        System.out.printf("%10s %12s %12s %14s %14s %8s%n", "n", "sum (ms)", "laço (ms)", "erro sum", "erro laço", "repete?");
+
+        ExpressionParser term = new ExpressionParser("1/k^2", Map.of("k", new Complex(1, 0)));
+        term.evaluate();
+        CompiledExpression f = term.compile("k");
+
+        for (long n : new long[]{1_000, 100_000, 1_000_000, 10_000_000}) {
+            // soma exata de 1/k^2 até n, a menos de O(1/n^5): pi^2/6 - 1/n + 1/(2n^2) - 1/(6n^3)
+            double exact = Math.PI * Math.PI / 6 - 1.0 / n + 0.5 / ((double) n * n) - 1.0 / (6.0 * n * n * n);
+
+            Complex[] series = new Complex[1];
+            double seriesMs = time(2, () -> series[0] = Series.sum(f, 1, n));
+            boolean repeatable = sameBits(series[0], Series.sum(f, 1, n));
+
+            double[] plain = new double[1];
+            double plainMs = time(2, () -> {
+                CompiledExpression.Frame frame = f.newFrame();
+                double acc = 0;
+                for (long k = 1; k <= n; k++) {
+                    frame.set(0, k, 0);
+                    frame.run();
+                    acc += frame.getReal();
+                }
+                plain[0] = acc;
+            });
+
+            System.out.printf("%10d %12.2f %12.2f %14.2e %14.2e %8s%n", n, seriesMs, plainMs,
+                    Math.abs(series[0].getReal() - exact), Math.abs(plain[0] - exact), repeatable ? "sim" : "NÃO");
+        }
+        System.out.println();
+    }
+
+    // ==============================
+    // LET E FUNÇÕES DO USUÁRIO
+    // ==============================
+    private static void benchmarkFunctions() {
+        System.out.println("== let e funções do usuário x expressão expandida (1e6 avaliações) ==");
+
+        FunctionRegistry functions = new FunctionRegistry();
+        functions.define("f(z) = sin(z)*sin(z) + sin(z)");
+        functions.define("g(z) = let s = sin(z) in s*s + s");
+        // corpos que só falhariam no valor provisório do parâmetro
+        functions.define("p(z) = 2^(1/z)");
+        functions.define("q(z) = sqrt(1/z)");
+        Complex half = new Complex(0.5, 0);
+        System.out.println("p(0.5) = " + new ExpressionParser("p(x)", Map.of("x", half), functions).evaluate()
+                + ", q(0.5) = " + new ExpressionParser("q(x)", Map.of("x", half), functions).evaluate());
+        String[][] cases = {
+                {"expandida", "sin(x)*sin(x)+sin(x)"},
+                {"let", "let t = sin(x) in t*t + t"},
+                {"f (sem let)", "f(x)"},
+                {"g (com let)", "g(x)"},
+        };
+
+        Complex x = new Complex(0.7, 0.2);
+        Complex reference = new ExpressionParser(cases[0][1], Map.of("x", x)).evaluate();
+        System.out.printf("%14s %12s %10s%n", "forma", "tempo (ms)", "igual?");
+        for (String[] c : cases) {
+            ExpressionParser p = new ExpressionParser(c[1], Map.of("x", x), functions);
+            p.evaluate();
+            CompiledExpression compiled = p.compile("x");
+            CompiledExpression.Frame frame = compiled.newFrame();
+            double ms = time(3, () -> {
+                for (int k = 0; k < 1_000_000; k++) {
+                    frame.set(0, x.getReal() + k * 1e-9, x.getImag());
+                    frame.run();
+                }
+            });
+            boolean same = sameBits(compiled.evaluate(x), reference);
+            System.out.printf("%14s %12.2f %10s%n", c[0], ms, same ? "sim" : "NÃO");
+        }
+        System.out.println();
+    }
+
+    // ==============================
+    // MEMÓRIA POR NÓ DA AST
+    // ==============================
+    private static void benchmarkAstMemory() {
+        System.out.println("== Memória da AST: objetos x arrays compactos ==");
+        int formulas = 200_000;
+        Map<String, Complex> vars = new HashMap<>();
+        vars.put("x", new Complex(0.7, 0.2));
+        vars.put("y", new Complex(1.3, -0.4));
+
+        long nodes = 0;
+        long before = usedHeap();
+        List<ExpressionParser.Node> objects = new ArrayList<>(formulas);
+        for (int k = 0; k < formulas; k++) {
+            ExpressionParser p = new ExpressionParser(libraryFormula(k), vars);
+            p.evaluate();
+            objects.add(p.getAstRoot());
+            nodes += countNodes(p.getAstRoot());
+        }
+        long objectBytes = usedHeap() - before;
+        objects.clear();
+
+        // a tabela de símbolos é criada aqui, então entra na medida da forma compacta
+        before = usedHeap();
+        CompactAst.Library library = new CompactAst.Library();
+        List<CompactAst> compact = new ArrayList<>(formulas);
+        long estimated = 0;
+        for (int k = 0; k < formulas; k++) {
+            ExpressionParser p = new ExpressionParser(libraryFormula(k), vars);
+            p.evaluate();
+            CompactAst ast = library.add(p.getAstRoot());
+            compact.add(ast);
+            estimated += ast.estimatedBytes();
+        }
+        estimated += library.estimatedBytes();
+        long compactBytes = usedHeap() - before;
+
+        System.out.printf("%d fórmulas, %d nós, %d símbolos%n", compact.size(), nodes, library.symbolCount());
+        System.out.printf("AST de objetos: %.1f MB, %.1f bytes/nó%n", objectBytes / 1e6, (double) objectBytes / nodes);
+        System.out.printf("AST compacta:   %.1f MB, %.1f bytes/nó (estimado, com a tabela de símbolos: %.1f)%n",
+                compactBytes / 1e6, (double) compactBytes / nodes, (double) estimated / nodes);
+        System.out.println();
+    }
+
+    // Fórmulas do corpus com constantes diferentes, como numa biblioteca real
+    private static long countNodes(ExpressionParser.Node n) {
+        long total = 1;
+        for (ExpressionParser.Node c : n.children)
+            total += countNodes(c);
+        return total;
+    }
+
+    private static String libraryFormula(int k) {
+        return "(" + CORPUS[k % CORPUS.length] + ")*" + (k % 97) + "+" + (k / 97) + ".5";
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int k = 0; k < 3; k++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static boolean sameBits(Complex a, Complex b) {
+        return Double.doubleToLongBits(a.getReal()) == Double.doubleToLongBits(b.getReal())
+                && Double.doubleToLongBits(a.getImag()) == Double.doubleToLongBits(b.getImag());
+    }
+
+    // ==============================
+    // FFT x DFT DIRETA
+    // ==============================
+    private static void benchmarkFft() {
+        System.out.println("== FFT x DFT direta ==");
+        System.out.printf("%8s %14s %14s %12s %12s%n", "n", "DFT (ms)", "FFT (ms)", "FFT/nlogn", "erro máx");
+
+        Random rnd = new Random(42);
+        int[] sizes = {256, 500, 1024, 2000, 4096, 8192, 10007, 1 << 16, 1 << 20};
+        for (int n : sizes) {
+            double[] re = new double[n];
+            double[] im = new double[n];
+            for (int k = 0; k < n; k++) {
+                re[k] = rnd.nextGaussian();
+                im[k] = rnd.nextGaussian();
+            }
+
+            double fftMs = time(5, () -> {
+                double[] r = re.clone(), i = im.clone();
+                FFT.transform(r, i);
+            });
+
+            // a DFT direta é O(n^2): só é medida enquanto cabe em alguns segundos
+            String dftCol = "-";
+            String errCol = "-";
+            if (n <= 8192) {
+                double[][] expected = new double[2][];
+                double dftMs = time(1, () -> {
+                    double[][] d = naiveDft(re, im);
+                    expected[0] = d[0];
+                    expected[1] = d[1];
+                });
+                double[] r = re.clone(), i = im.clone();
+                FFT.transform(r, i);
+                double err = 0;
+                for (int k = 0; k < n; k++)
+                    err = Math.max(err, Math.hypot(r[k] - expected[0][k], i[k] - expected[1][k]));
+                dftCol = String.format("%.3f", dftMs);
+                errCol = String.format("%.2e", err);
+            }
+
+            double nlogn = n * (Math.log(n) / Math.log(2));
+            System.out.printf("%8d %14s %14.3f %12.2e %12s%n", n, dftCol, fftMs, fftMs / nlogn, errCol);
+        }
+        System.out.println();
+    }
+
+    private static double[][] naiveDft(double[] re, double[] im) {
+        int n = re.length;
+        double[] outR = new double[n];
+        double[] outI = new double[n];
+        for (int k = 0; k < n; k++) {
+            double sr = 0, si = 0;
+            for (int j = 0; j < n; j++) {
+                double angle = -2 * Math.PI * (((long) j * k) % n) / n;
+                double c = Math.cos(angle), s = Math.sin(angle);
+                sr += re[j] * c - im[j] * s;
+                si += re[j] * s + im[j] * c;
+            }
+            outR[k] = sr;
+            outI[k] = si;
+        }
+        return new double[][]{outR, outI};
+    }
+
+    // ==============================
+    // AUXILIARES
+    // ==============================
+
+    // Melhor tempo (ms) de algumas repetições, após aquecimento do JIT
+    private static double time(int repetitions, Runnable task) {
+        for (int k = 0; k < repetitions; k++) task.run();
+        double best = Double.MAX_VALUE;
+        for (int k = 0; k < repetitions; k++) {
+            long t0 = System.nanoTime();
+            task.run();
+            best = Math.min(best, (System.nanoTime() - t0) / 1e6);
+        }
+        return best;
+    }
+}
@@ -1,17 +1,36 @@
 // CalculatorGUI.java
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.DefaultMutableTreeNode;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CalculatorGUI extends JFrame {
 
     private JTextField tela;
     private JTree arvoreExecucao;
     private JTabbedPane abas;
+    private HistoryStore historico;
+    private JTextField buscaHistorico;
+    private DefaultListModel<HistoryStore.Entry> modeloHistorico;
+    private JTextArea detalheHistorico;
+    private SwingWorker<List<HistoryStore.Entry>, Void> buscaAtual;
+    private final FunctionRegistry funcoes = new FunctionRegistry();
 
     public CalculatorGUI() {
         super("Calculadora de Complexos - AST");
@@ -29,12 +48,120 @@ public class CalculatorGUI extends JFrame {
         abas.add("Calculadora", criarPainelBotoes());
         arvoreExecucao = new JTree(new DefaultMutableTreeNode("Nenhuma expressão avaliada"));
         abas.add("Árvore", new JScrollPane(arvoreExecucao));
+        abas.add("Histórico", criarPainelHistorico());
         add(abas, BorderLayout.CENTER);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                fecharHistorico();
+            }
+        });
+    }
+
+    private JPanel criarPainelHistorico() {
+        JPanel painel = new JPanel(new BorderLayout(6, 6));
+        Path arquivo = Paths.get(System.getProperty("user.home"), ".calculadora", "historico.dat");
+        try {
+            historico = HistoryStore.open(arquivo);
+        } catch (IOException ex) {
+            painel.add(new JLabel("Histórico indisponível: " + ex.getMessage()), BorderLayout.NORTH);
+            return painel;
+        }
+
+        buscaHistorico = new JTextField();
+        buscaHistorico.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { atualizarHistorico(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { atualizarHistorico(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { atualizarHistorico(); }
+        });
+        JPanel busca = new JPanel(new BorderLayout(6, 6));
+        busca.add(new JLabel("Buscar:"), BorderLayout.WEST);
+        busca.add(buscaHistorico, BorderLayout.CENTER);
+        painel.add(busca, BorderLayout.NORTH);
+
+        modeloHistorico = new DefaultListModel<>();
+        JList<HistoryStore.Entry> lista = new JList<>(modeloHistorico);
+        lista.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // um clique traz a expressão de volta para a tela
+        lista.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int idx = lista.locationToIndex(e.getPoint());
+                if (idx < 0) return;
+                HistoryStore.Entry entrada = modeloHistorico.get(idx);
+                detalheHistorico.setText("Expressão: " + entrada.getExpression()
+                        + "\nVariáveis: " + entrada.getVariables()
+                        + "\nResultado: " + entrada.getResult()
+                        + "\nÁrvore LISP: " + entrada.getLispTree());
+                tela.setText(entrada.getExpression());
+            }
+        });
+        painel.add(new JScrollPane(lista), BorderLayout.CENTER);
+
+        detalheHistorico = new JTextArea(4, 40);
+        detalheHistorico.setEditable(false);
+        detalheHistorico.setLineWrap(true);
+        painel.add(new JScrollPane(detalheHistorico), BorderLayout.SOUTH);
+
+        atualizarHistorico();
+        return painel;
+    }
+
+    // A busca roda fora da thread da interface; só o resultado da última busca é mostrado
+    private void atualizarHistorico() {
+        if (historico == null) return;
+        if (buscaAtual != null) buscaAtual.cancel(false);
+
+        HistoryStore store = historico;
+        String prefixo = buscaHistorico.getText().trim();
+        buscaAtual = new SwingWorker<List<HistoryStore.Entry>, Void>() {
+            @Override
+            protected List<HistoryStore.Entry> doInBackground() {
+                return store.search(prefixo, 500);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || buscaAtual != this) return;
+                try {
+                    modeloHistorico.clear();
+                    for (HistoryStore.Entry entrada : get())
+                        modeloHistorico.addElement(entrada);
+                } catch (InterruptedException | ExecutionException ex) {
+                    detalheHistorico.setText("Erro na busca: " + ex.getMessage());
+                }
+            }
+        };
+        buscaAtual.execute();
+    }
+
+    private void registrarHistorico(String expressao, Map<String, Complex> vars, Object resultado, String lisp) {
+        if (historico == null) return;
+        try {
+            historico.append(expressao, vars, resultado.toString(), lisp);
+            atualizarHistorico();
+        } catch (IOException ex) {
+            tela.setText("Erro ao gravar histórico: " + ex.getMessage());
+        }
+    }
+
+    private void fecharHistorico() {
+        if (historico == null) return;
+        try {
+            historico.close();
+        } catch (IOException ex) {
+            // saindo do programa: não há mais onde mostrar o erro
+        }
+        historico = null;
     }
 
     private JPanel criarPainelBotoes() {
         JPanel painel = new JPanel(new BorderLayout());
-        JPanel grid = new JPanel(new GridLayout(6, 5, 6, 6));
+        JPanel grid = new JPanel(new GridLayout(11, 5, 6, 6));
 
         String[] botoes = {
                 "sin", "cos", "tan", "log", "C",
@@ -42,7 +169,12 @@ public class CalculatorGUI extends JFrame {
                 "7", "8", "9", "/", "*",
                 "4", "5", "6", "+", "-",
                 "1", "2", "3", "i", ".",
-                "^", "√", "0", "=", "=="
+                "^", "√", "0", "=", "==",
+                "[", "]", ",", "dot", "matmul",
+                "fft", "ifft", "conv", "abs", "transpose",
+                "integrate", "contour", "exp", "sqrt", "t",
+                "sum", "prod", "k", "n", "def",
+                "let"
         };
 
         for (String b : botoes) {
@@ -75,8 +207,8 @@ public class CalculatorGUI extends JFrame {
                 Map<String, Complex> vars = collectVariables(texto);
                 if (vars == null) return;
                 try {
-                    ExpressionParser parser = new ExpressionParser(texto, vars);
-                    Complex res = parser.evaluate();
+                    ExpressionParser parser = new ExpressionParser(texto, vars, funcoes);
+                    Object res = parser.evaluateValue();
                     tela.setText(res.toString());
 
                     // Atualizar a árvore com formato LISP
@@ -84,10 +216,13 @@ public class CalculatorGUI extends JFrame {
                     rootNode.add(parser.getExecutionTree());
                     rootNode.add(new DefaultMutableTreeNode("Resultado: " + res.toString()));
                     rootNode.add(new DefaultMutableTreeNode("Árvore LISP: " + parser.getLispTree()));
+                    for (Integrator.Report r : parser.getIntegrationReports())
+                        rootNode.add(new DefaultMutableTreeNode("Integração: " + r));
 
                     arvoreExecucao.setModel(new DefaultTreeModel(rootNode));
                     expandAllRows(arvoreExecucao);
                     abas.setSelectedIndex(1);
+                    registrarHistorico(texto, vars, res, parser.getLispTree());
                 } catch (Exception ex) {
                     tela.setText("Erro: " + ex.getMessage());
                 }
@@ -109,11 +244,11 @@ public class CalculatorGUI extends JFrame {
                 Map<String, Complex> vars = collectVariables(texto + expr2);
                 if (vars == null) return;
                 try {
-                    ExpressionParser p1 = new ExpressionParser(texto, vars);
-                    ExpressionParser p2 = new ExpressionParser(expr2, vars);
-                    p1.evaluate();
-                    p2.evaluate();
-                    boolean iguais = ExpressionParser.compareAst(p1.getAstRoot(), p2.getAstRoot());
+                    ExpressionParser p1 = new ExpressionParser(texto, vars, funcoes);
+                    ExpressionParser p2 = new ExpressionParser(expr2, vars, funcoes);
+                    p1.evaluateValue();
+                    p2.evaluateValue();
+                    boolean iguais = ExpressionParser.compareAst(p1.getCompactAst(), p2.getCompactAst());
 
                     DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode("Comparação de Expressões");
                     rootNode.add(new DefaultMutableTreeNode("Expressão 1: " + texto));
@@ -132,8 +267,38 @@ public class CalculatorGUI extends JFrame {
                 return;
             }
 
+            if (cmd.equals("def")) {
+                String def = JOptionPane.showInputDialog(
+                        CalculatorGUI.this,
+                        "Defina uma função (ex: f(z) = z^2 + 1):",
+                        "Definir Função",
+                        JOptionPane.QUESTION_MESSAGE
+                );
+                if (def == null || def.trim().isEmpty()) return;
+                try {
+                    FunctionRegistry.Definition f = funcoes.define(def);
+                    // já deixa a chamada pronta na tela
+                    tela.setText(texto + f.getName() + "(");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(CalculatorGUI.this, ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+                }
+                return;
+            }
+
+            if (cmd.equals("let")) {
+                String local = JOptionPane.showInputDialog(
+                        CalculatorGUI.this,
+                        "Valor local, calculado uma vez (ex: t = sin(x)):",
+                        "Definição Local",
+                        JOptionPane.QUESTION_MESSAGE
+                );
+                if (local == null || local.trim().isEmpty()) return;
+                tela.setText(texto + "let " + local.trim() + " in ");
+                return;
+            }
+
             // funções: inserir "nome(" para o parser reconhecer
-            if (cmd.equals("sin") || cmd.equals("cos") || cmd.equals("tan") || cmd.equals("log")) {
+            if (isFunction(cmd)) {
                 tela.setText(texto + cmd + "(");
                 return;
             }
@@ -164,23 +329,33 @@ public class CalculatorGUI extends JFrame {
     private Map<String, Complex> collectVariables(String expr) {
         Set<String> names = new LinkedHashSet<>();
 
-        // Processar a expressão para identificar variáveis
-        // Vamos usar uma abordagem mais simples: procurar por letras isoladas
-        for (int i = 0; i < expr.length(); i++) {
-            char c = expr.charAt(i);
-
-            if (Character.isLetter(c)) {
-                // Verificar se é uma letra única (não parte de uma função)
-                if (i == 0 || !Character.isLetter(expr.charAt(i - 1))) {
-                    // Verificar se não é seguida por '(' (função)
-                    if (i + 1 >= expr.length() || expr.charAt(i + 1) != '(') {
-                        String potentialVar = String.valueOf(c);
-                        // Ignorar "i" que é constante
-                        if (!potentialVar.equalsIgnoreCase("i")) {
-                            names.add(potentialVar);
-                        }
-                    }
-                }
+        // nomes ligados por "let t = ..." não são variáveis de entrada
+        Set<String> locais = new HashSet<>();
+        locais.add("let");
+        locais.add("in");
+        Matcher let = Pattern.compile("(?<![A-Za-z])let\\s+([A-Za-z]+)").matcher(expr);
+        while (let.find())
+            locais.add(let.group(1));
+        List<Ligacao> ligacoes = variaveisLigadas(expr);
+
+        // Processar a expressão para identificar variáveis:
+        // cada sequência de letras que não é seguida por '(' (função)
+        int i = 0;
+        while (i < expr.length()) {
+            if (!Character.isLetter(expr.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            while (i < expr.length() && Character.isLetter(expr.charAt(i))) i++;
+            String potentialVar = expr.substring(start, i);
+
+            // Ignorar "i" que é constante
+            boolean isCall = i < expr.length() && expr.charAt(i) == '(';
+            if (!isCall && !potentialVar.equalsIgnoreCase("i") && !locais.contains(potentialVar)
+                    && !ligadaEm(ligacoes, potentialVar, start)) {
+                names.add(potentialVar);
             }
         }
 
@@ -206,6 +381,58 @@ public class CalculatorGUI extends JFrame {
         return vars;
     }
 
+    // Variável ligada por uma chamada, válida só entre os parênteses dela
+    private static final class Ligacao {
+        final String nome;
+        final int inicio, fim;
+
+        Ligacao(String nome, int inicio, int fim) {
+            this.nome = nome;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+    }
+
+    // integrate(expr, t, a, b) e contour(expr, z, c, r) ligam o 2º argumento;
+    // sum(k, a, b, expr) e prod(k, a, b, expr) ligam o 1º
+    private static final Pattern CHAMADA_LIGADA = Pattern.compile(
+            "(?<![A-Za-z])(integrate|contour|sum|prod)\\s*\\(", Pattern.CASE_INSENSITIVE);
+
+    private static List<Ligacao> variaveisLigadas(String expr) {
+        List<Ligacao> ligacoes = new ArrayList<>();
+        Matcher m = CHAMADA_LIGADA.matcher(expr);
+        while (m.find()) {
+            int abre = m.end();
+            int fim = abre, depth = 0, virgula = -1;
+            for (; fim < expr.length(); fim++) {
+                char c = expr.charAt(fim);
+                if (c == '(' || c == '[') depth++;
+                else if (c == ')' || c == ']') {
+                    if (depth == 0) break;
+                    depth--;
+                } else if (c == ',' && depth == 0 && virgula < 0) {
+                    virgula = fim;
+                }
+            }
+            boolean indice = m.group(1).equalsIgnoreCase("sum") || m.group(1).equalsIgnoreCase("prod");
+            if (!indice && virgula < 0) continue;
+
+            int k = indice ? abre : virgula + 1;
+            while (k < expr.length() && Character.isWhitespace(expr.charAt(k))) k++;
+            int inicioNome = k;
+            while (k < expr.length() && Character.isLetter(expr.charAt(k))) k++;
+            if (k > inicioNome)
+                ligacoes.add(new Ligacao(expr.substring(inicioNome, k), abre, fim));
+        }
+        return ligacoes;
+    }
+
+    private static boolean ligadaEm(List<Ligacao> ligacoes, String nome, int posicao) {
+        for (Ligacao l : ligacoes)
+            if (l.nome.equals(nome) && posicao >= l.inicio && posicao < l.fim) return true;
+        return false;
+    }
+
     private boolean isFunction(String token) {
         return token.equalsIgnoreCase("sin") ||
                 token.equalsIgnoreCase("cos") ||
@@ -213,7 +440,17 @@ public class CalculatorGUI extends JFrame {
                 token.equalsIgnoreCase("log") ||
                 token.equalsIgnoreCase("exp") ||
                 token.equalsIgnoreCase("abs") ||
-                token.equalsIgnoreCase("sqrt");
+                token.equalsIgnoreCase("sqrt") ||
+                token.equalsIgnoreCase("dot") ||
+                token.equalsIgnoreCase("matmul") ||
+                token.equalsIgnoreCase("transpose") ||
+                token.equalsIgnoreCase("fft") ||
+                token.equalsIgnoreCase("ifft") ||
+                token.equalsIgnoreCase("conv") ||
+                token.equalsIgnoreCase("integrate") ||
+                token.equalsIgnoreCase("contour") ||
+                token.equalsIgnoreCase("sum") ||
+                token.equalsIgnoreCase("prod");
     }
 
     public static void main(String[] args) {
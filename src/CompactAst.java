@@ -0,0 +1,320 @@
+// CompactAst.java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representação compacta de uma AST do {@link ExpressionParser}, para guardar
+ * muitas expressões com pouca memória.
+ *
+ * Os nós ficam em pré-ordem em arrays primitivos: {@code ops[n]} é o opcode,
+ * {@code operand[n]} aponta para o pool de constantes (números) ou para a tabela
+ * de símbolos (variáveis, funções, literais), e {@code end[n]} é o índice logo
+ * depois da subárvore de n. Os filhos de n começam em n + 1 e cada um vai até o
+ * seu próprio {@code end}; folhas não ocupam nada além do próprio nó.
+ *
+ * A tabela de símbolos é uma {@link Library}: quem guarda muitas fórmulas cria
+ * uma e converte todas por ela, para que cada nome seja guardado uma vez; a
+ * tabela é liberada junto com as ASTs. {@link #of} usa uma tabela só da AST.
+ *
+ * A conversão preserva o texto de cada token, então {@link #toLisp()} e
+ * {@link #equals(CompactAst)} dão o mesmo resultado que a AST de objetos.
+ */
+public final class CompactAst {
+
+    // ==============================
+    // OPCODES
+    // ==============================
+    static final byte NUMBER = 0;  // operando: índice em constants
+    static final byte SYMBOL = 1;  // folha textual (variável, literal complexo); operando: símbolo
+    static final byte ADD = 2;
+    static final byte SUB = 3;
+    static final byte MUL = 4;
+    static final byte DIV = 5;
+    static final byte POW = 6;
+    static final byte ROOT = 7;    // √
+    static final byte CALL = 8;    // função, vetor, matriz...; operando: símbolo
+
+    private static final String[] OPERATORS = {null, null, "+", "-", "*", "/", "^", "√", null};
+
+    private final Library library;
+    private final boolean ownsLibrary;
+    private final byte[] ops;
+    private final int[] operand;
+    private final int[] end;
+    private final double[] constants;
+
+    private CompactAst(Library library, boolean ownsLibrary, byte[] ops, int[] operand, int[] end, double[] constants) {
+        this.library = library;
+        this.ownsLibrary = ownsLibrary;
+        this.ops = ops;
+        this.operand = operand;
+        this.end = end;
+        this.constants = constants;
+    }
+
+    // ==============================
+    // TABELA DE SÍMBOLOS
+    // ==============================
+
+    /**
+     * Tabela de símbolos compartilhada pelas ASTs convertidas por ela. Não é
+     * thread-safe: quem converte por várias threads deve sincronizar o acesso.
+     */
+    public static final class Library {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> symbols = new ArrayList<>();
+        private long textBytes;
+
+        public CompactAst add(ExpressionParser.Node root) {
+            return build(root, this, false);
+        }
+
+        public int symbolCount() {
+            return symbols.size();
+        }
+
+        /** Bytes aproximados da tabela (strings, entradas do mapa e da lista). */
+        public long estimatedBytes() {
+            // por símbolo: String (24) + array (16) + entrada do HashMap (32) + Integer (16)
+            // + referências na tabela do mapa e na lista (8)
+            return 64 + symbols.size() * 96L + textBytes;
+        }
+
+        private int symbol(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = symbols.size();
+                symbols.add(name);
+                ids.put(name, id);
+                textBytes += name.length();
+            }
+            return id;
+        }
+
+        private String name(int id) {
+            return symbols.get(id);
+        }
+    }
+
+    // ==============================
+    // CONVERSÃO
+    // ==============================
+
+    /** Converte uma AST isolada, com uma tabela de símbolos só dela. */
+    public static CompactAst of(ExpressionParser.Node root) {
+        return build(root, new Library(), true);
+    }
+
+    private static CompactAst build(ExpressionParser.Node root, Library library, boolean ownsLibrary) {
+        int[] counts = new int[2];
+        count(root, counts);
+        Builder b = new Builder(library, counts[0], counts[1]);
+        b.add(root);
+        return new CompactAst(library, ownsLibrary, b.ops, b.operand, b.end, b.constants);
+    }
+
+    private static void count(ExpressionParser.Node n, int[] counts) {
+        counts[0]++;
+        if (n.children.isEmpty() && isCanonicalNumber(n.token))
+            counts[1]++;
+        for (ExpressionParser.Node c : n.children)
+            count(c, counts);
+    }
+
+    private static final class Builder {
+        final Library library;
+        final byte[] ops;
+        final int[] operand;
+        final int[] end;
+        final double[] constants;
+        int size;
+        int constCount;
+
+        Builder(Library library, int nodes, int numbers) {
+            this.library = library;
+            ops = new byte[nodes];
+            operand = new int[nodes];
+            end = new int[nodes];
+            constants = new double[numbers];
+        }
+
+        void add(ExpressionParser.Node n) {
+            int at = size++;
+            String t = n.token;
+
+            if (n.children.isEmpty()) {
+                if (isCanonicalNumber(t)) {
+                    ops[at] = NUMBER;
+                    constants[constCount] = Double.parseDouble(t);
+                    operand[at] = constCount++;
+                } else {
+                    ops[at] = SYMBOL;
+                    operand[at] = library.symbol(t);
+                }
+            } else {
+                byte op = operatorCode(t, n.children.size());
+                ops[at] = op;
+                if (op == CALL)
+                    operand[at] = library.symbol(t);
+                for (ExpressionParser.Node c : n.children)
+                    add(c);
+            }
+            end[at] = size;
+        }
+    }
+
+    private static byte operatorCode(String t, int arity) {
+        if (arity == 2) {
+            switch (t) {
+                case "+": return ADD;
+                case "-": return SUB;
+                case "*": return MUL;
+                case "/": return DIV;
+                case "^": return POW;
+            }
+        }
+        if (arity == 1 && t.equals("√")) return ROOT;
+        return CALL;
+    }
+
+    // Só vira constante o número cujo texto é reconstruído exatamente a partir do valor
+    private static boolean isCanonicalNumber(String t) {
+        char c = t.charAt(0);
+        if (!Character.isDigit(c) && c != '.') return false;
+        try {
+            return formatNumber(Double.parseDouble(t)).equals(t);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String formatNumber(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15)
+            return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    // ==============================
+    // NAVEGAÇÃO
+    // ==============================
+    public int size() {
+        return ops.length;
+    }
+
+    public boolean isLeaf(int n) {
+        return end[n] == n + 1;
+    }
+
+    public int firstChild(int n) {
+        return n + 1;
+    }
+
+    /** Próximo irmão de {@code n}; igual a {@code end(pai)} quando não há mais filhos. */
+    public int nextSibling(int n) {
+        return end[n];
+    }
+
+    public int end(int n) {
+        return end[n];
+    }
+
+    /** Texto do token do nó, igual ao de {@link ExpressionParser.Node#token}. */
+    public String token(int n) {
+        switch (ops[n]) {
+            case NUMBER:
+                return formatNumber(constants[operand[n]]);
+            case SYMBOL:
+            case CALL:
+                return library.name(operand[n]);
+            default:
+                return OPERATORS[ops[n]];
+        }
+    }
+
+    // ==============================
+    // LISP / COMPARAÇÃO
+    // ==============================
+    public String toLisp() {
+        StringBuilder sb = new StringBuilder();
+        appendLisp(0, sb);
+        return sb.toString();
+    }
+
+    private void appendLisp(int n, StringBuilder sb) {
+        if (isLeaf(n)) {
+            sb.append(token(n));
+            return;
+        }
+        sb.append("(").append(token(n));
+        for (int c = firstChild(n); c < end[n]; c = end[c]) {
+            sb.append(" ");
+            appendLisp(c, sb);
+        }
+        sb.append(")");
+    }
+
+    /**
+     * Igualdade estrutural, com o mesmo critério de {@link ExpressionParser#compareAst}.
+     * Com a mesma {@link Library} os símbolos são comparados pelo id; entre
+     * tabelas diferentes, pelo texto.
+     */
+    public boolean equals(CompactAst other) {
+        if (other == this) return true;
+        if (other == null || other.ops.length != ops.length) return false;
+        boolean sameLibrary = library == other.library;
+
+        for (int n = 0; n < ops.length; n++) {
+            if (ops[n] != other.ops[n] || end[n] != other.end[n]) return false;
+            if (ops[n] == NUMBER) {
+                if (Double.doubleToLongBits(constants[operand[n]])
+                        != Double.doubleToLongBits(other.constants[other.operand[n]]))
+                    return false;
+            } else if (ops[n] == SYMBOL || ops[n] == CALL) {
+                if (sameLibrary ? operand[n] != other.operand[n]
+                        : !library.name(operand[n]).equals(other.library.name(other.operand[n])))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactAst && equals((CompactAst) o);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = ops.length;
+        for (int n = 0; n < ops.length; n++)
+            h = 31 * h + ops[n] * 17 + symbolHash(n);
+        return h;
+    }
+
+    // O hash usa o texto dos símbolos, para valer entre tabelas diferentes
+    private int symbolHash(int n) {
+        switch (ops[n]) {
+            case NUMBER:
+                return Double.hashCode(constants[operand[n]]);
+            case SYMBOL:
+            case CALL:
+                return library.name(operand[n]).hashCode();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Bytes ocupados por esta AST. Inclui a tabela de símbolos quando ela é só
+     * desta AST ({@link #of}); uma {@link Library} compartilhada é contada à parte
+     * por {@link Library#estimatedBytes()}.
+     */
+    public long estimatedBytes() {
+        // cabeçalho de objeto + 5 referências/campos, e 16 bytes de cabeçalho por array
+        long bytes = 32 + (16 + ops.length) + (16 + 4L * operand.length) + (16 + 4L * end.length)
+                + (16 + 8L * constants.length);
+        return ownsLibrary ? bytes + library.estimatedBytes() : bytes;
+    }
+}
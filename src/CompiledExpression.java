@@ -0,0 +1,613 @@
+// CompiledExpression.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forma compilada de uma AST escalar do {@link ExpressionParser}.
+ *
+ * A árvore é convertida em um array plano de opcodes (com operandos inline) e um
+ * pool de constantes. A avaliação é um laço sobre esse array usando uma pilha de
+ * {@code double} pré-alocada em um {@link Frame}, com as partes real e imaginária
+ * em arrays separados: não há alocação nem comparação de strings por avaliação.
+ *
+ * Cada operação repete a mesma sequência de contas da classe {@link Complex}, de
+ * modo que o resultado é idêntico ao de {@link ExpressionParser#evaluate()}.
+ * O menos unário aparece na AST como (- 0 x) e, como no parser, é calculado
+ * como a subtração 0 - x (o que também vale para um 0-x escrito explicitamente).
+ *
+ * {@code let} e chamadas de funções do {@link FunctionRegistry} são expandidas
+ * no lugar (inline): cada valor ligado, ou argumento, é calculado uma vez e
+ * guardado com STORE em um slot local do frame, depois dos parâmetros. Funções
+ * cujo código passa de {@link #INLINE_LIMIT} palavras são chamadas com CALL em
+ * vez de expandidas, para que cadeias como f2(z) = f1(z) + f1(z), f3(z) = f2(z)
+ * + f2(z)... não façam o código crescer exponencialmente.
+ *
+ * sum, prod, integrate e contour viram programas aninhados: o corpo é compilado
+ * à parte, com a variável ligada no slot 0 e os nomes visíveis do programa
+ * externo (parâmetros, locais) como slots seguintes. Cada frame guarda um frame
+ * para cada programa aninhado; na execução, os valores atuais desses slots são
+ * copiados para ele, que é avaliado por {@link Series} ou {@link Integrator}
+ * como no parser.
+ */
+public final class CompiledExpression {
+
+    // ==============================
+    // OPCODES
+    // ==============================
+    static final int CONST = 0;   // operando: índice no pool de constantes
+    static final int LOAD = 1;    // operando: slot da variável
+    static final int ADD = 2;
+    static final int SUB = 3;
+    static final int MUL = 4;
+    static final int DIV = 5;
+    static final int POW = 6;
+    static final int SQRT = 7;
+    static final int SIN = 8;
+    static final int COS = 9;
+    static final int TAN = 10;
+    static final int LOG = 11;
+    static final int EXP = 12;
+    static final int ABS = 13;
+    static final int STORE = 14;  // operando: slot local; desempilha o valor
+    static final int SUM = 15;        // operando: programa aninhado; desempilha os dois limites
+    static final int PROD = 16;
+    static final int INTEGRATE = 17;
+    static final int CONTOUR = 18;    // desempilha centro e raio
+    static final int CALL = 19;       // operando: função chamada; desempilha os argumentos
+
+    static final int INLINE_LIMIT = 48;
+
+    private final int[] code;
+    private final double[] constRe;
+    private final double[] constIm;
+    private final String[] slotNames;
+    private final int frameSlots;  // parâmetros + locais de let e funções expandidas
+    private final int maxStack;
+    private final Nested[] nested;
+    private final CompiledExpression[] calls;
+
+    private CompiledExpression(int[] code, double[] constRe, double[] constIm, String[] slotNames, int frameSlots,
+            int maxStack, Nested[] nested, CompiledExpression[] calls) {
+        this.code = code;
+        this.constRe = constRe;
+        this.constIm = constIm;
+        this.slotNames = slotNames;
+        this.frameSlots = frameSlots;
+        this.maxStack = maxStack;
+        this.nested = nested;
+        this.calls = calls;
+    }
+
+    /**
+     * Compila a AST. Os nomes em {@code params} viram slots (na mesma ordem) que
+     * podem mudar a cada avaliação; as demais variáveis são lidas de
+     * {@code bindings} agora e entram no pool de constantes.
+     */
+    public static CompiledExpression compile(ExpressionParser.Node root, Map<String, Complex> bindings, String... params) {
+        return compile(root, bindings, null, params);
+    }
+
+    /** Como {@link #compile(ExpressionParser.Node, Map, String...)}, expandindo as funções de {@code functions}. */
+    public static CompiledExpression compile(ExpressionParser.Node root, Map<String, Complex> bindings,
+            FunctionRegistry functions, String... params) {
+        Compiler c = new Compiler(bindings, functions, params);
+        c.emitNode(root);
+        return new CompiledExpression(
+                Arrays.copyOf(c.code, c.size),
+                c.toArray(c.constRe),
+                c.toArray(c.constIm),
+                params.clone(),
+                c.slotTotal,
+                c.maxDepth,
+                c.nested.toArray(new Nested[0]),
+                c.calls.toArray(new CompiledExpression[0]));
+    }
+
+    int codeLength() {
+        return code.length;
+    }
+
+    public Frame newFrame() {
+        return new Frame(this);
+    }
+
+    /** Avaliação de conveniência; os argumentos seguem a ordem dos parâmetros. */
+    public Complex evaluate(Complex... args) {
+        if (args.length != slotNames.length)
+            throw new IllegalArgumentException(
+                    "Esperados " + slotNames.length + " argumento(s), recebidos " + args.length + ".");
+        Frame f = newFrame();
+        for (int k = 0; k < args.length; k++)
+            f.set(k, args[k].getReal(), args[k].getImag());
+        f.run();
+        return new Complex(f.re, f.im);
+    }
+
+    /**
+     * Pilha e slots de uma avaliação. Um frame não deve ser usado por duas threads
+     * ao mesmo tempo; cada thread cria o seu com {@link #newFrame()}.
+     */
+    public static final class Frame {
+        private final CompiledExpression program;
+        private final double[] stackRe, stackIm;
+        private final double[] varRe, varIm;
+        private double re, im;
+        // frames das funções chamadas com CALL, um por ponto de chamada, reaproveitados
+        private Frame[] callFrames;
+        // o mesmo para os programas aninhados, e o resultado do último deles
+        private Frame[] nestedFrames;
+        private double[] nestedResult;
+
+        private Frame(CompiledExpression program) {
+            this.program = program;
+            this.stackRe = new double[Math.max(1, program.maxStack)];
+            this.stackIm = new double[Math.max(1, program.maxStack)];
+            this.varRe = new double[program.frameSlots];
+            this.varIm = new double[program.frameSlots];
+        }
+
+        public void set(int slot, double re, double im) {
+            varRe[slot] = re;
+            varIm[slot] = im;
+        }
+
+        public void run() {
+            program.execute(this);
+        }
+
+        public double getReal() {
+            return re;
+        }
+
+        public double getImag() {
+            return im;
+        }
+
+        private Frame callFrame(int k) {
+            if (callFrames == null)
+                callFrames = new Frame[program.calls.length];
+            Frame c = callFrames[k];
+            if (c == null)
+                c = callFrames[k] = program.calls[k].newFrame();
+            return c;
+        }
+
+        private Frame nestedFrame(int k) {
+            if (nestedFrames == null) {
+                nestedFrames = new Frame[program.nested.length];
+                nestedResult = new double[2];
+            }
+            Frame c = nestedFrames[k];
+            if (c == null)
+                c = nestedFrames[k] = program.nested[k].body.newFrame();
+            return c;
+        }
+
+        // Novo frame do mesmo programa com os mesmos valores nos slots, para outra thread
+        Frame copy() {
+            Frame c = new Frame(program);
+            System.arraycopy(varRe, 0, c.varRe, 0, varRe.length);
+            System.arraycopy(varIm, 0, c.varIm, 0, varIm.length);
+            return c;
+        }
+    }
+
+    // ==============================
+    // INTERPRETADOR
+    // ==============================
+    private void execute(Frame f) {
+        final int[] code = this.code;
+        final double[] sr = f.stackRe, si = f.stackIm;
+        int sp = -1;
+        int pc = 0;
+
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case CONST: {
+                    int k = code[pc++];
+                    sp++;
+                    sr[sp] = constRe[k];
+                    si[sp] = constIm[k];
+                    break;
+                }
+                case LOAD: {
+                    int k = code[pc++];
+                    sp++;
+                    sr[sp] = f.varRe[k];
+                    si[sp] = f.varIm[k];
+                    break;
+                }
+                case STORE: {
+                    int k = code[pc++];
+                    f.varRe[k] = sr[sp];
+                    f.varIm[k] = si[sp];
+                    sp--;
+                    break;
+                }
+                case ADD:
+                    sp--;
+                    sr[sp] = sr[sp] + sr[sp + 1];
+                    si[sp] = si[sp] + si[sp + 1];
+                    break;
+                case SUB:
+                    sp--;
+                    sr[sp] = sr[sp] - sr[sp + 1];
+                    si[sp] = si[sp] - si[sp + 1];
+                    break;
+                case MUL: {
+                    sp--;
+                    double ar = sr[sp], ai = si[sp], br = sr[sp + 1], bi = si[sp + 1];
+                    sr[sp] = ar * br - ai * bi;
+                    si[sp] = ar * bi + ai * br;
+                    break;
+                }
+                case DIV: {
+                    sp--;
+                    double ar = sr[sp], ai = si[sp], br = sr[sp + 1], bi = si[sp + 1];
+                    double denom = br * br + bi * bi;
+                    sr[sp] = (ar * br + ai * bi) / denom;
+                    si[sp] = (ai * br - ar * bi) / denom;
+                    break;
+                }
+                case POW: {
+                    sp--;
+                    if (si[sp + 1] != 0)
+                        throw new IllegalArgumentException("Expoente deve ser real.");
+                    double x = sr[sp + 1];
+                    double r = Math.hypot(sr[sp], si[sp]);
+                    double theta = Math.atan2(si[sp], sr[sp]);
+                    double newR = Math.pow(r, x);
+                    double newTheta = theta * x;
+                    sr[sp] = newR * Math.cos(newTheta);
+                    si[sp] = newR * Math.sin(newTheta);
+                    break;
+                }
+                case SQRT: {
+                    if (si[sp] != 0)
+                        throw new IllegalArgumentException("sqrt só suporta números reais.");
+                    double x = sr[sp];
+                    if (x < 0) {
+                        sr[sp] = 0;
+                        si[sp] = Math.sqrt(-x);
+                    } else {
+                        sr[sp] = Math.sqrt(x);
+                        si[sp] = 0;
+                    }
+                    break;
+                }
+                case SIN: {
+                    double a = sr[sp], b = si[sp];
+                    sr[sp] = Math.sin(a) * Math.cosh(b);
+                    si[sp] = Math.cos(a) * Math.sinh(b);
+                    break;
+                }
+                case COS: {
+                    double a = sr[sp], b = si[sp];
+                    sr[sp] = Math.cos(a) * Math.cosh(b);
+                    si[sp] = -Math.sin(a) * Math.sinh(b);
+                    break;
+                }
+                case TAN: {
+                    double a = sr[sp], b = si[sp];
+                    double nr = Math.sin(a) * Math.cosh(b);
+                    double ni = Math.cos(a) * Math.sinh(b);
+                    double dr = Math.cos(a) * Math.cosh(b);
+                    double di = -Math.sin(a) * Math.sinh(b);
+                    double denom = dr * dr + di * di;
+                    sr[sp] = (nr * dr + ni * di) / denom;
+                    si[sp] = (ni * dr - nr * di) / denom;
+                    break;
+                }
+                case LOG: {
+                    double a = sr[sp], b = si[sp];
+                    sr[sp] = Math.log(Math.hypot(a, b));
+                    si[sp] = Math.atan2(b, a);
+                    break;
+                }
+                case EXP: {
+                    double expReal = Math.exp(sr[sp]);
+                    double b = si[sp];
+                    sr[sp] = expReal * Math.cos(b);
+                    si[sp] = expReal * Math.sin(b);
+                    break;
+                }
+                case ABS:
+                    sr[sp] = Math.hypot(sr[sp], si[sp]);
+                    si[sp] = 0;
+                    break;
+                case CALL: {
+                    int k = code[pc++];
+                    Frame inner = f.callFrame(k);
+                    int n = calls[k].slotNames.length;
+                    sp -= n;
+                    for (int j = 0; j < n; j++) {
+                        inner.varRe[j] = sr[sp + 1 + j];
+                        inner.varIm[j] = si[sp + 1 + j];
+                    }
+                    calls[k].execute(inner);
+                    sp++;
+                    sr[sp] = inner.re;
+                    si[sp] = inner.im;
+                    break;
+                }
+                case SUM:
+                case PROD:
+                case INTEGRATE:
+                case CONTOUR: {
+                    int op = code[pc - 1];
+                    int k = code[pc++];
+                    Frame inner = f.nestedFrame(k);
+                    sp--;
+                    nested[k].run(op, f, inner, sr[sp], si[sp], sr[sp + 1], si[sp + 1], f.nestedResult);
+                    sr[sp] = f.nestedResult[0];
+                    si[sp] = f.nestedResult[1];
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Opcode inválido: " + code[pc - 1]);
+            }
+        }
+
+        f.re = sr[0];
+        f.im = si[0];
+    }
+
+    // Corpo de sum/prod/integrate/contour: a variável ligada fica no slot 0 e o
+    // slot k + 1 recebe o slot captures[k] do programa externo
+    private static final class Nested {
+        private final CompiledExpression body;
+        private final int[] captures;
+
+        Nested(CompiledExpression body, int[] captures) {
+            this.body = body;
+            this.captures = captures;
+        }
+
+        // inner é o frame do corpo guardado no frame externo; o resultado vai para out[0..1]
+        void run(int op, Frame outer, Frame inner, double aRe, double aIm, double bRe, double bIm, double[] out) {
+            for (int k = 0; k < captures.length; k++) {
+                inner.varRe[k + 1] = outer.varRe[captures[k]];
+                inner.varIm[k + 1] = outer.varIm[captures[k]];
+            }
+
+            switch (op) {
+                case SUM:
+                    Series.sum(inner, Series.integerBound(aRe, aIm, "sum"), Series.integerBound(bRe, bIm, "sum"), out);
+                    break;
+                case PROD:
+                    Series.product(inner, Series.integerBound(aRe, aIm, "prod"), Series.integerBound(bRe, bIm, "prod"), out);
+                    break;
+                case INTEGRATE:
+                    Integrator.segment(inner, aRe, aIm, bRe, bIm, out);
+                    break;
+                default:
+                    if (bIm != 0 || bRe <= 0)
+                        throw new IllegalArgumentException("O raio deve ser real e positivo.");
+                    Integrator.circle(inner, aRe, aIm, bRe, out);
+            }
+        }
+    }
+
+    // ==============================
+    // COMPILADOR (AST -> OPCODES)
+    // ==============================
+    private static final class Compiler {
+        private final FunctionRegistry functions;
+        private Map<String, Complex> bindings;
+        // nomes visíveis no escopo atual (parâmetros, let, parâmetros de função expandida)
+        private Map<String, Integer> slots = new HashMap<>();
+        private int slotTotal;
+        private final List<Double> constRe = new ArrayList<>();
+        private final List<Double> constIm = new ArrayList<>();
+        private final List<Nested> nested = new ArrayList<>();
+        private final List<CompiledExpression> calls = new ArrayList<>();
+
+        private int[] code = new int[32];
+        private int size;
+        private int depth;
+        private int maxDepth;
+
+        Compiler(Map<String, Complex> bindings, FunctionRegistry functions, String[] params) {
+            this.bindings = bindings == null ? new HashMap<>() : bindings;
+            this.functions = functions;
+            for (int k = 0; k < params.length; k++)
+                slots.put(params[k], k);
+            slotTotal = params.length;
+        }
+
+        void emitNode(ExpressionParser.Node n) {
+            String t = n.token;
+
+            if (n.children.isEmpty()) {
+                emitLeaf(t);
+                return;
+            }
+
+            if (n.children.size() == 2 && t.length() == 1 && "+-*/^".indexOf(t.charAt(0)) >= 0) {
+                ExpressionParser.Node left = n.children.get(0);
+                ExpressionParser.Node right = n.children.get(1);
+
+                emitNode(left);
+                emitNode(right);
+                switch (t.charAt(0)) {
+                    case '+': emit(ADD); break;
+                    case '-': emit(SUB); break;
+                    case '*': emit(MUL); break;
+                    case '/': emit(DIV); break;
+                    default: emit(POW); break;
+                }
+                pop(1);
+                return;
+            }
+
+            // (let t valor corpo)
+            if (t.equals("let") && n.children.size() == 3) {
+                int slot = emitStore(n.children.get(1));
+                Map<String, Integer> saved = slots;
+                slots = new HashMap<>(slots);
+                slots.put(n.children.get(0).token, slot);
+                emitNode(n.children.get(2));
+                slots = saved;
+                return;
+            }
+
+            // (sum k a b corpo), (prod k a b corpo)
+            String lower = t.toLowerCase();
+            if ((lower.equals("sum") || lower.equals("prod")) && n.children.size() == 4) {
+                emitNested(lower.equals("sum") ? SUM : PROD, n.children.get(0).token, n.children.get(3),
+                        n.children.get(1), n.children.get(2));
+                return;
+            }
+            // (integrate corpo t a b), (contour corpo z centro raio)
+            if ((lower.equals("integrate") || lower.equals("contour")) && n.children.size() == 4) {
+                emitNested(lower.equals("integrate") ? INTEGRATE : CONTOUR, n.children.get(1).token, n.children.get(0),
+                        n.children.get(2), n.children.get(3));
+                return;
+            }
+
+            FunctionRegistry.Definition def = functions == null ? null : functions.get(t);
+            if (def != null) {
+                emitCall(def, n.children);
+                return;
+            }
+
+            if (n.children.size() == 1) {
+                int op = unaryOpcode(t);
+                emitNode(n.children.get(0));
+                emit(op);
+                return;
+            }
+
+            throw new IllegalArgumentException("Operação não suportada na forma compilada: " + t);
+        }
+
+        // O corpo vira um programa à parte que captura os nomes visíveis aqui
+        private void emitNested(int op, String var, ExpressionParser.Node body, ExpressionParser.Node a,
+                ExpressionParser.Node b) {
+            List<String> names = new ArrayList<>();
+            names.add(var);
+            List<Integer> captured = new ArrayList<>();
+            for (Map.Entry<String, Integer> e : slots.entrySet()) {
+                if (e.getKey().equals(var)) continue;
+                names.add(e.getKey());
+                captured.add(e.getValue());
+            }
+            int[] captures = new int[captured.size()];
+            for (int k = 0; k < captures.length; k++)
+                captures[k] = captured.get(k);
+
+            CompiledExpression inner = compile(body, bindings, functions, names.toArray(new String[0]));
+            nested.add(new Nested(inner, captures));
+
+            emitNode(a);
+            emitNode(b);
+            emit(op, nested.size() - 1);
+            pop(1);
+        }
+
+        // Calcula o valor uma vez e o guarda em um novo slot local
+        private int emitStore(ExpressionParser.Node value) {
+            emitNode(value);
+            int slot = slotTotal++;
+            emit(STORE, slot);
+            pop(1);
+            return slot;
+        }
+
+        // O corpo da função só enxerga os próprios parâmetros, ligados aos slots dos argumentos
+        private void emitCall(FunctionRegistry.Definition def, List<ExpressionParser.Node> args) {
+            if (args.size() != def.arity())
+                throw new IllegalArgumentException(def.getName() + " espera " + def.arity() + " argumento(s).");
+
+            CompiledExpression callee = functions.compiledFor(def);
+            if (callee.codeLength() > INLINE_LIMIT) {
+                for (ExpressionParser.Node arg : args)
+                    emitNode(arg);
+                calls.add(callee);
+                emit(CALL, calls.size() - 1);
+                pop(args.size() - 1);
+                return;
+            }
+
+            Map<String, Integer> scope = new HashMap<>();
+            for (int k = 0; k < args.size(); k++)
+                scope.put(def.param(k), emitStore(args.get(k)));
+
+            Map<String, Integer> savedSlots = slots;
+            Map<String, Complex> savedBindings = bindings;
+            slots = scope;
+            bindings = new HashMap<>();
+            emitNode(def.getBody());
+            slots = savedSlots;
+            bindings = savedBindings;
+        }
+
+        private static int unaryOpcode(String token) {
+            switch (token.toLowerCase()) {
+                case "√":
+                case "sqrt": return SQRT;
+                case "sin": return SIN;
+                case "cos": return COS;
+                case "tan": return TAN;
+                case "log": return LOG;
+                case "exp": return EXP;
+                case "abs": return ABS;
+                default:
+                    throw new IllegalArgumentException("Operação não suportada na forma compilada: " + token);
+            }
+        }
+
+        private void emitLeaf(String t) {
+            Integer slot = slots.get(t);
+            if (slot != null) {
+                emit(LOAD, slot);
+                push();
+                return;
+            }
+
+            Complex value;
+            char c = t.charAt(0);
+            if (Character.isDigit(c) || c == '.' || c == '+' || c == '-') {
+                // números reais e complexos: mesma conversão do parser
+                value = Complex.parse(t);
+            } else if (bindings.containsKey(t)) {
+                value = bindings.get(t);
+            } else if (t.equals("i")) {
+                value = new Complex(0, 1);
+            } else {
+                throw new IllegalArgumentException("Variável desconhecida: " + t);
+            }
+
+            constRe.add(value.getReal());
+            constIm.add(value.getImag());
+            emit(CONST, constRe.size() - 1);
+            push();
+        }
+
+        private void emit(int... words) {
+            if (size + words.length > code.length)
+                code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+            for (int w : words)
+                code[size++] = w;
+        }
+
+        private void push() {
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void pop(int count) {
+            depth -= count;
+        }
+
+        private double[] toArray(List<Double> values) {
+            double[] out = new double[values.size()];
+            for (int k = 0; k < out.length; k++)
+                out[k] = values.get(k);
+            return out;
+        }
+    }
+}
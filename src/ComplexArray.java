@@ -0,0 +1,134 @@
+// ComplexArray.java
+import java.util.function.UnaryOperator;
+
+/**
+ * Base comum de {@link ComplexVector} e {@link ComplexMatrix}: os elementos ficam em
+ * dois arrays {@code double[]} separados (parte real e parte imaginária), e as
+ * operações elemento a elemento são feitas pelos laços de {@link ComplexKernels}.
+ */
+public abstract class ComplexArray {
+
+    final double[] re;
+    final double[] im;
+
+    ComplexArray(double[] re, double[] im) {
+        if (re.length != im.length)
+            throw new IllegalArgumentException("Partes real e imaginária com tamanhos diferentes.");
+        this.re = re;
+        this.im = im;
+    }
+
+    /** Cria um array com a mesma forma deste, com os dados informados. */
+    abstract ComplexArray create(double[] re, double[] im);
+
+    /** Descrição da forma, usada nas mensagens de erro (ex: "[3]", "[2x2]"). */
+    public abstract String shape();
+
+    abstract boolean sameShape(ComplexArray other);
+
+    public int size() {
+        return re.length;
+    }
+
+    public Complex getFlat(int k) {
+        return new Complex(re[k], im[k]);
+    }
+
+    // --------------------------
+    // ----- OPERAÇÕES BÁSICAS --
+    // --------------------------
+    public ComplexArray plus(ComplexArray b) {
+        return combine('+', b);
+    }
+
+    public ComplexArray minus(ComplexArray b) {
+        return combine('-', b);
+    }
+
+    public ComplexArray times(ComplexArray b) {
+        return combine('*', b);
+    }
+
+    public ComplexArray divide(ComplexArray b) {
+        return combine('/', b);
+    }
+
+    public ComplexArray plus(Complex b) {
+        return combine('+', b);
+    }
+
+    public ComplexArray minus(Complex b) {
+        return combine('-', b);
+    }
+
+    public ComplexArray times(Complex b) {
+        return combine('*', b);
+    }
+
+    public ComplexArray divide(Complex b) {
+        return combine('/', b);
+    }
+
+    ComplexArray combine(char op, ComplexArray b) {
+        if (!sameShape(b))
+            throw new IllegalArgumentException("Dimensões incompatíveis: " + shape() + " e " + b.shape());
+        int n = size();
+        double[] outR = new double[n];
+        double[] outI = new double[n];
+        ComplexKernels.binary(op, re, im, b.re, b.im, outR, outI, n);
+        return create(outR, outI);
+    }
+
+    ComplexArray combine(char op, Complex b) {
+        int n = size();
+        double[] outR = new double[n];
+        double[] outI = new double[n];
+        ComplexKernels.binaryScalarRight(op, re, im, b.getReal(), b.getImag(), outR, outI, n);
+        return create(outR, outI);
+    }
+
+    /** {@code a (op) this}, com o escalar à esquerda. */
+    ComplexArray combineLeft(char op, Complex a) {
+        int n = size();
+        double[] outR = new double[n];
+        double[] outI = new double[n];
+        ComplexKernels.binaryScalarLeft(op, a.getReal(), a.getImag(), re, im, outR, outI, n);
+        return create(outR, outI);
+    }
+
+    // --------------------------
+    // -------- POTÊNCIA --------
+    // --------------------------
+    public ComplexArray pow(double x) {
+        int n = size();
+        double[] outR = new double[n];
+        double[] outI = new double[n];
+        for (int k = 0; k < n; k++) {
+            // mesma sequência de operações de Complex.pow
+            double r = Math.hypot(re[k], im[k]);
+            double theta = Math.atan2(im[k], re[k]);
+            double newR = Math.pow(r, x);
+            double newTheta = theta * x;
+            outR[k] = newR * Math.cos(newTheta);
+            outI[k] = newR * Math.sin(newTheta);
+        }
+        return create(outR, outI);
+    }
+
+    /** Aplica uma função escalar a cada elemento. */
+    public ComplexArray map(UnaryOperator<Complex> f) {
+        int n = size();
+        double[] outR = new double[n];
+        double[] outI = new double[n];
+        for (int k = 0; k < n; k++) {
+            Complex z = f.apply(new Complex(re[k], im[k]));
+            outR[k] = z.getReal();
+            outI[k] = z.getImag();
+        }
+        return create(outR, outI);
+    }
+
+    static String format(double r, double i) {
+        return new Complex(r, i).toString();
+    }
+}
@@ -0,0 +1,127 @@
+// ComplexKernels.java
+
+/**
+ * Laços elemento a elemento sobre arrays separados (parte real / parte imaginária).
+ * Cada laço é contado, sem desvios e sem dependência entre iterações, para que o
+ * JIT consiga vetorizá-lo (SIMD) automaticamente.
+ */
+final class ComplexKernels {
+
+    private ComplexKernels() {
+    }
+
+    // ==============================
+    // ARRAY (op) ARRAY
+    // ==============================
+    static void binary(char op, double[] ar, double[] ai, double[] br, double[] bi,
+                       double[] outR, double[] outI, int n) {
+        switch (op) {
+            case '+':
+                for (int k = 0; k < n; k++) {
+                    outR[k] = ar[k] + br[k];
+                    outI[k] = ai[k] + bi[k];
+                }
+                break;
+            case '-':
+                for (int k = 0; k < n; k++) {
+                    outR[k] = ar[k] - br[k];
+                    outI[k] = ai[k] - bi[k];
+                }
+                break;
+            case '*':
+                for (int k = 0; k < n; k++) {
+                    double xr = ar[k], xi = ai[k], yr = br[k], yi = bi[k];
+                    outR[k] = xr * yr - xi * yi;
+                    outI[k] = xr * yi + xi * yr;
+                }
+                break;
+            case '/':
+                for (int k = 0; k < n; k++) {
+                    double xr = ar[k], xi = ai[k], yr = br[k], yi = bi[k];
+                    double denom = yr * yr + yi * yi;
+                    outR[k] = (xr * yr + xi * yi) / denom;
+                    outI[k] = (xi * yr - xr * yi) / denom;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Operador desconhecido: " + op);
+        }
+    }
+
+    // ==============================
+    // ARRAY (op) ESCALAR
+    // ==============================
+    static void binaryScalarRight(char op, double[] ar, double[] ai, double sr, double si,
+                                  double[] outR, double[] outI, int n) {
+        switch (op) {
+            case '+':
+                for (int k = 0; k < n; k++) {
+                    outR[k] = ar[k] + sr;
+                    outI[k] = ai[k] + si;
+                }
+                break;
+            case '-':
+                for (int k = 0; k < n; k++) {
+                    outR[k] = ar[k] - sr;
+                    outI[k] = ai[k] - si;
+                }
+                break;
+            case '*':
+                for (int k = 0; k < n; k++) {
+                    double xr = ar[k], xi = ai[k];
+                    outR[k] = xr * sr - xi * si;
+                    outI[k] = xr * si + xi * sr;
+                }
+                break;
+            case '/': {
+                double denom = sr * sr + si * si;
+                for (int k = 0; k < n; k++) {
+                    double xr = ar[k], xi = ai[k];
+                    outR[k] = (xr * sr + xi * si) / denom;
+                    outI[k] = (xi * sr - xr * si) / denom;
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Operador desconhecido: " + op);
+        }
+    }
+
+    // ==============================
+    // ESCALAR (op) ARRAY
+    // ==============================
+    static void binaryScalarLeft(char op, double sr, double si, double[] br, double[] bi,
+                                 double[] outR, double[] outI, int n) {
+        switch (op) {
+            case '+':
+                for (int k = 0; k < n; k++) {
+                    outR[k] = sr + br[k];
+                    outI[k] = si + bi[k];
+                }
+                break;
+            case '-':
+                for (int k = 0; k < n; k++) {
+                    outR[k] = sr - br[k];
+                    outI[k] = si - bi[k];
+                }
+                break;
+            case '*':
+                for (int k = 0; k < n; k++) {
+                    double yr = br[k], yi = bi[k];
+                    outR[k] = sr * yr - si * yi;
+                    outI[k] = sr * yi + si * yr;
+                }
+                break;
+            case '/':
+                for (int k = 0; k < n; k++) {
+                    double yr = br[k], yi = bi[k];
+                    double denom = yr * yr + yi * yi;
+                    outR[k] = (sr * yr + si * yi) / denom;
+                    outI[k] = (si * yr - sr * yi) / denom;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Operador desconhecido: " + op);
+        }
+    }
+}
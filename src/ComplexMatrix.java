@@ -0,0 +1,163 @@
+// ComplexMatrix.java
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Matriz complexa em ordem de linha (row-major): o elemento (i, j) fica na posição
+ * {@code i * cols + j} dos arrays real e imaginário.
+ */
+public class ComplexMatrix extends ComplexArray {
+
+    // lado do bloco da multiplicação: 3 blocos de 64x64 (re + im) cabem no L2
+    private static final int BLOCK = 64;
+    // abaixo disso (rows * inner * cols) a multiplicação fica em uma thread só
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    private final int rows;
+    private final int cols;
+
+    public ComplexMatrix(int rows, int cols, double[] re, double[] im) {
+        super(re, im);
+        if ((long) rows * cols != re.length)
+            throw new IllegalArgumentException("Dados não correspondem a uma matriz " + rows + "x" + cols);
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public ComplexMatrix(int rows, int cols) {
+        this(rows, cols, new double[rows * cols], new double[rows * cols]);
+    }
+
+    /** Monta a matriz a partir das linhas, que devem ter todas o mesmo tamanho. */
+    public static ComplexMatrix ofRows(List<ComplexVector> rows) {
+        int r = rows.size();
+        int c = rows.get(0).length();
+        ComplexMatrix m = new ComplexMatrix(r, c);
+        for (int i = 0; i < r; i++) {
+            ComplexVector row = rows.get(i);
+            if (row.length() != c)
+                throw new IllegalArgumentException("Linhas da matriz com tamanhos diferentes.");
+            System.arraycopy(row.re, 0, m.re, i * c, c);
+            System.arraycopy(row.im, 0, m.im, i * c, c);
+        }
+        return m;
+    }
+
+    @Override
+    ComplexArray create(double[] re, double[] im) {
+        return new ComplexMatrix(rows, cols, re, im);
+    }
+
+    @Override
+    public String shape() {
+        return "[" + rows + "x" + cols + "]";
+    }
+
+    @Override
+    boolean sameShape(ComplexArray other) {
+        if (!(other instanceof ComplexMatrix)) return false;
+        ComplexMatrix m = (ComplexMatrix) other;
+        return m.rows == rows && m.cols == cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public Complex get(int i, int j) {
+        return getFlat(i * cols + j);
+    }
+
+    // --------------------------
+    // ------ TRANSPOSTA --------
+    // --------------------------
+    public ComplexMatrix transpose() {
+        ComplexMatrix t = new ComplexMatrix(cols, rows);
+        for (int i0 = 0; i0 < rows; i0 += BLOCK) {
+            int iEnd = Math.min(i0 + BLOCK, rows);
+            for (int j0 = 0; j0 < cols; j0 += BLOCK) {
+                int jEnd = Math.min(j0 + BLOCK, cols);
+                for (int i = i0; i < iEnd; i++) {
+                    for (int j = j0; j < jEnd; j++) {
+                        t.re[j * rows + i] = re[i * cols + j];
+                        t.im[j * rows + i] = im[i * cols + j];
+                    }
+                }
+            }
+        }
+        return t;
+    }
+
+    // --------------------------
+    // - PRODUTO MATRICIAL ------
+    // --------------------------
+    public ComplexMatrix multiply(ComplexMatrix b) {
+        if (cols != b.rows)
+            throw new IllegalArgumentException("Dimensões incompatíveis: " + shape() + " e " + b.shape());
+
+        ComplexMatrix c = new ComplexMatrix(rows, b.cols);
+        int rowBlocks = (rows + BLOCK - 1) / BLOCK;
+        IntStream blocks = IntStream.range(0, rowBlocks);
+        if ((long) rows * cols * b.cols >= PARALLEL_THRESHOLD)
+            blocks = blocks.parallel();
+
+        // cada bloco de linhas escreve apenas nas suas linhas de C, e a ordem da soma
+        // em k é a mesma com ou sem paralelismo
+        blocks.forEach(ib -> multiplyRowBlock(b, c, ib * BLOCK, Math.min(ib * BLOCK + BLOCK, rows)));
+        return c;
+    }
+
+    private void multiplyRowBlock(ComplexMatrix b, ComplexMatrix c, int i0, int iEnd) {
+        int n = b.cols;
+        for (int k0 = 0; k0 < cols; k0 += BLOCK) {
+            int kEnd = Math.min(k0 + BLOCK, cols);
+            for (int j0 = 0; j0 < n; j0 += BLOCK) {
+                int jEnd = Math.min(j0 + BLOCK, n);
+                for (int i = i0; i < iEnd; i++) {
+                    int cRow = i * n;
+                    for (int k = k0; k < kEnd; k++) {
+                        double ar = re[i * cols + k];
+                        double ai = im[i * cols + k];
+                        int bRow = k * n;
+                        // laço interno contíguo em j: vetorizável
+                        for (int j = j0; j < jEnd; j++) {
+                            double br = b.re[bRow + j];
+                            double bi = b.im[bRow + j];
+                            c.re[cRow + j] += ar * br - ai * bi;
+                            c.im[cRow + j] += ar * bi + ai * br;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Produto matriz-vetor, tratando o vetor como coluna. */
+    public ComplexVector multiply(ComplexVector v) {
+        if (cols != v.length())
+            throw new IllegalArgumentException("Dimensões incompatíveis: " + shape() + " e " + v.shape());
+
+        ComplexMatrix column = new ComplexMatrix(v.length(), 1, v.re.clone(), v.im.clone());
+        ComplexMatrix r = multiply(column);
+        return new ComplexVector(r.re, r.im);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("[");
+            for (int j = 0; j < cols; j++) {
+                if (j > 0) sb.append(", ");
+                sb.append(format(re[i * cols + j], im[i * cols + j]));
+            }
+            sb.append("]");
+        }
+        return sb.append("]").toString();
+    }
+}
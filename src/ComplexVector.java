@@ -0,0 +1,74 @@
+// ComplexVector.java
+import java.util.List;
+
+public class ComplexVector extends ComplexArray {
+
+    public ComplexVector(double[] re, double[] im) {
+        super(re, im);
+    }
+
+    public ComplexVector(int length) {
+        this(new double[length], new double[length]);
+    }
+
+    public static ComplexVector of(List<Complex> values) {
+        int n = values.size();
+        double[] re = new double[n];
+        double[] im = new double[n];
+        for (int k = 0; k < n; k++) {
+            re[k] = values.get(k).getReal();
+            im[k] = values.get(k).getImag();
+        }
+        return new ComplexVector(re, im);
+    }
+
+    @Override
+    ComplexArray create(double[] re, double[] im) {
+        return new ComplexVector(re, im);
+    }
+
+    @Override
+    public String shape() {
+        return "[" + length() + "]";
+    }
+
+    @Override
+    boolean sameShape(ComplexArray other) {
+        return other instanceof ComplexVector && other.size() == size();
+    }
+
+    public int length() {
+        return re.length;
+    }
+
+    public Complex get(int k) {
+        return getFlat(k);
+    }
+
+    // --------------------------
+    // ---- PRODUTO ESCALAR -----
+    // --------------------------
+
+    /** Soma de a[k]*b[k], sem conjugar nenhum dos lados (como numpy.dot). */
+    public Complex dot(ComplexVector b) {
+        if (b.length() != length())
+            throw new IllegalArgumentException("Dimensões incompatíveis: " + shape() + " e " + b.shape());
+
+        double sr = 0, si = 0;
+        for (int k = 0; k < re.length; k++) {
+            sr += re[k] * b.re[k] - im[k] * b.im[k];
+            si += re[k] * b.im[k] + im[k] * b.re[k];
+        }
+        return new Complex(sr, si);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int k = 0; k < re.length; k++) {
+            if (k > 0) sb.append(", ");
+            sb.append(format(re[k], im[k]));
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -2,8 +2,12 @@
 import javax.swing.tree.DefaultMutableTreeNode;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ExpressionParser {
 
@@ -11,9 +15,28 @@ public class ExpressionParser {
     private int pos;
     private final Map<String, Complex> variables;
     private final Map<String, Complex> allVariables;
+    private final FunctionRegistry functions;
 
     private Node root;
-    private Complex lastResult;
+    private CompactAst compactRoot;
+    private Object lastResult;
+    private final List<Integrator.Report> integrationReports = new ArrayList<>();
+    // > 0 enquanto um corpo é analisado com valores provisórios (parseBoundBody)
+    private int placeholderDepth;
+
+    // nomes que não podem ser redefinidos pelo usuário
+    private static final Set<String> RESERVED = Set.of(
+            "sin", "cos", "tan", "log", "exp", "abs", "sqrt", "dot", "matmul", "transpose",
+            "fft", "ifft", "conv", "integrate", "contour", "sum", "prod", "let", "in", "i");
+
+    // palavras-chave de "let t = A in B"; só são reconhecidas separadas por espaços
+    private static final Pattern LET = Pattern.compile("(?<![A-Za-z])let(?=\\s+[A-Za-z])");
+    private static final Pattern IN = Pattern.compile("(?<=[\\s)\\]])in(?=[\\s(\\[]|$)");
+
+    // Posições, no texto sem espaços, onde começa um let/in e onde um identificador
+    // precisa terminar porque os espaços originais separavam uma palavra-chave
+    private final Set<Integer> keywords = new HashSet<>();
+    private final Set<Integer> wordBreaks = new HashSet<>();
 
     // ==============================
     // compareAst
@@ -31,6 +54,12 @@ public class ExpressionParser {
         return true;
     }
 
+    public static boolean compareAst(CompactAst a, CompactAst b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        return a.equals(b);
+    }
+
     // ==============================
     // NÓ DO AST
     // ==============================
@@ -47,13 +76,20 @@ public class ExpressionParser {
         }
     }
 
+    // value é um Complex, um ComplexVector ou uma ComplexMatrix
     private static class Result {
-        Complex value;
+        Object value;
         Node node;
-        Result(Complex v, Node n) {
+        Result(Object v, Node n) {
             value = v;
             node = n;
         }
+
+        Complex scalar(String context) {
+            if (!(value instanceof Complex))
+                throw new IllegalArgumentException(context + " deve ser escalar.");
+            return (Complex) value;
+        }
     }
 
     public ExpressionParser(String expression) {
@@ -61,17 +97,69 @@ public class ExpressionParser {
     }
 
     public ExpressionParser(String expression, Map<String, Complex> variables) {
+        this(expression, variables, null);
+    }
+
+    /** Parser que também reconhece as funções definidas em {@code functions}. */
+    public ExpressionParser(String expression, Map<String, Complex> variables, FunctionRegistry functions) {
         if (expression == null)
             expression = "";
 
-        this.expression = expression.replaceAll("\\s+", "");
+        this.expression = stripWhitespace(expression);
         this.pos = 0;
         this.variables = variables == null ? new HashMap<>() : new HashMap<>(variables);
+        this.functions = functions == null ? new FunctionRegistry() : functions;
 
         this.allVariables = new HashMap<>(this.variables);
         this.allVariables.put("i", new Complex(0, 1));
     }
 
+    // Remove os espaços, guardando onde ficam as palavras-chave let/in
+    private String stripWhitespace(String text) {
+        Map<Integer, Integer> keywordLength = new HashMap<>();
+        Matcher let = LET.matcher(text);
+        while (let.find())
+            keywordLength.put(let.start(), 3);
+        if (!keywordLength.isEmpty()) {
+            Matcher in = IN.matcher(text);
+            while (in.find())
+                keywordLength.put(in.start(), 2);
+        }
+
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int k = 0; k < text.length(); k++) {
+            char c = text.charAt(k);
+            if (Character.isWhitespace(c)) continue;
+            Integer length = keywordLength.get(k);
+            if (length != null) {
+                keywords.add(sb.length());
+                wordBreaks.add(sb.length());
+                wordBreaks.add(sb.length() + length);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private boolean isKeyword(String word) {
+        return keywords.contains(pos) && expression.startsWith(word, pos);
+    }
+
+    // Letras a partir de pos, parando onde os espaços separavam uma palavra-chave
+    private String readIdentifier() {
+        int start = pos;
+        while (pos < expression.length() && Character.isLetter(expression.charAt(pos))
+                && (pos == start || !wordBreaks.contains(pos))) {
+            pos++;
+        }
+        return expression.substring(start, pos);
+    }
+
+    /** Nomes de funções embutidas e palavras-chave, que não podem ser redefinidos. */
+    public static boolean isReservedName(String name) {
+        return RESERVED.contains(name.toLowerCase());
+    }
+
     private boolean isKnownFunction(String name) {
         return name.equalsIgnoreCase("sin") ||
                 name.equalsIgnoreCase("cos") ||
@@ -83,32 +171,90 @@ public class ExpressionParser {
     }
 
     public Complex evaluate() {
+        Object value = evaluateValue();
+        if (!(value instanceof Complex))
+            throw new IllegalArgumentException("Resultado não é escalar: " + ((ComplexArray) value).shape());
+        return (Complex) value;
+    }
+
+    /**
+     * Avalia a expressão e devolve o resultado, que pode ser um {@link Complex},
+     * um {@link ComplexVector} ou uma {@link ComplexMatrix}.
+     */
+    public Object evaluateValue() {
         pos = 0;
+        integrationReports.clear();
         Result r = parseExpression();
         if (pos != expression.length())
             throw new IllegalArgumentException("Erro perto de: " + expression.substring(pos));
 
         root = r.node;
+        compactRoot = null;
         lastResult = r.value;
         return lastResult;
     }
 
+    /**
+     * Analisa a expressão com os valores provisórios das variáveis, só para montar
+     * a AST: somatórios, integrais e chamadas de funções do usuário internos não
+     * são calculados. Usado para o corpo de uma definição de função.
+     */
+    Object evaluatePlaceholder() {
+        placeholderDepth++;
+        try {
+            return evaluateValue();
+        } finally {
+            placeholderDepth--;
+        }
+    }
+
     public Node getAstRoot() {
         return root;
     }
 
+    /** A última AST na forma compacta (arrays primitivos), criada sob demanda. */
+    public CompactAst getCompactAst() {
+        if (root == null)
+            return null;
+        if (compactRoot == null)
+            compactRoot = CompactAst.of(root);
+        return compactRoot;
+    }
+
+    /** Relatórios (avaliações e erro estimado) das integrais da última avaliação. */
+    public List<Integrator.Report> getIntegrationReports() {
+        return new ArrayList<>(integrationReports);
+    }
+
+    /**
+     * Compila a última expressão avaliada para o interpretador de opcodes. Os nomes
+     * em {@code params} podem receber novos valores a cada avaliação; as demais
+     * variáveis ficam com os valores passados a este parser.
+     */
+    public CompiledExpression compile(String... params) {
+        if (root == null)
+            throw new IllegalStateException("Nenhuma expressão avaliada");
+        return CompiledExpression.compile(root, allVariables, functions, params);
+    }
+
     public DefaultMutableTreeNode getExecutionTree() {
         if (root == null)
             return new DefaultMutableTreeNode("Nenhuma expressão avaliada");
 
-        return buildTree(root);
+        return getExecutionTree(getCompactAst(), allVariables);
     }
 
-    private DefaultMutableTreeNode buildTree(Node n) {
-        DefaultMutableTreeNode dm = new DefaultMutableTreeNode(n.token + " = " + evaluateNode(n));
+    /** Árvore de execução de uma AST compacta, com os valores das variáveis dadas. */
+    public static DefaultMutableTreeNode getExecutionTree(CompactAst ast, Map<String, Complex> variables) {
+        return buildTree(ast, 0, variables == null ? new HashMap<>() : variables);
+    }
+
+    private static DefaultMutableTreeNode buildTree(CompactAst ast, int n, Map<String, Complex> variables) {
+        String token = ast.token(n);
+        DefaultMutableTreeNode dm = new DefaultMutableTreeNode(token + " = " + evaluateNode(token, ast.isLeaf(n), variables));
 
-        for (Node c : n.children)
-            dm.add(buildTree(c));
+        for (int c = ast.firstChild(n); c < ast.end(n); c = ast.nextSibling(c))
+            dm.add(buildTree(ast, c, variables));
 
         return dm;
     }
@@ -119,40 +265,24 @@ public class ExpressionParser {
     public String getLispTree() {
         if (root == null)
             return "()";
-        return toLisp(root);
+        return getCompactAst().toLisp();
     }
 
-    private String toLisp(Node node) {
-        if (node.children.isEmpty()) {
-            return node.token;
-        }
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("(").append(node.token);
-
-        for (Node child : node.children) {
-            sb.append(" ").append(toLisp(child));
-        }
-
-        sb.append(")");
-        return sb.toString();
-    }
-
-    private String evaluateNode(Node node) {
+    private static String evaluateNode(String token, boolean leaf, Map<String, Complex> variables) {
         try {
-            if (node.children.isEmpty()) {
+            if (leaf) {
                 // É um número ou variável
-                if (node.token.matches("-?\\d+(\\.\\d+)?")) {
-                    return node.token;
-                } else if (allVariables.containsKey(node.token)) {
-                    return allVariables.get(node.token).toString();
+                if (token.matches("-?\\d+(\\.\\d+)?")) {
+                    return token;
+                } else if (variables.containsKey(token)) {
+                    return variables.get(token).toString();
                 } else {
-                    return node.token;
+                    return token;
                 }
             }
 
             // É uma operação
-            switch (node.token) {
+            switch (token) {
                 case "+": return "soma";
                 case "-": return "subtração";
                 case "*": return "multiplicação";
@@ -163,7 +293,20 @@ public class ExpressionParser {
                 case "cos": return "cosseno";
                 case "tan": return "tangente";
                 case "log": return "logaritmo";
-                default: return node.token;
+                case "vec": return "vetor";
+                case "mat": return "matriz";
+                case "dot": return "produto escalar";
+                case "matmul": return "produto matricial";
+                case "transpose": return "transposta";
+                case "fft": return "transformada de Fourier";
+                case "ifft": return "transformada inversa de Fourier";
+                case "conv": return "convolução";
+                case "integrate": return "integral";
+                case "contour": return "integral de contorno";
+                case "sum": return "somatório";
+                case "prod": return "produtório";
+                case "let": return "definição local";
+                default: return token;
             }
         } catch (Exception e) {
             return "?";
@@ -181,7 +324,7 @@ public class ExpressionParser {
             if (op == '+' || op == '-') {
                 pos++;
                 Result right = parseTerm();
-                Complex val = (op == '+') ? left.value.plus(right.value) : left.value.minus(right.value);
+                Object val = arithmetic(op, left.value, right.value);
                 Node node = new Node(String.valueOf(op), left.node, right.node);
                 left = new Result(val, node);
             } else {
@@ -199,7 +342,7 @@ public class ExpressionParser {
             if (op == '*' || op == '/') {
                 pos++;
                 Result right = parseFactor();
-                Complex val = (op == '*') ? left.value.times(right.value) : left.value.divide(right.value);
+                Object val = arithmetic(op, left.value, right.value);
                 Node node = new Node(String.valueOf(op), left.node, right.node);
                 left = new Result(val, node);
             } else {
@@ -214,7 +357,8 @@ public class ExpressionParser {
         if (pos < expression.length() && expression.charAt(pos) == '-') {
             pos++;
             Result r = parseFactor();
-            Complex val = r.value.scale(-1);
+            // calcula exatamente o que a AST diz, (- 0 x), como um 0-x explícito
+            Object val = arithmetic('-', new Complex(0, 0), r.value);
             Node zero = new Node("0");
             Node node = new Node("-", zero, r.node);
             return new Result(val, node);
@@ -229,10 +373,15 @@ public class ExpressionParser {
             pos++;
             Result right = parseFactor();
 
-            if (right.value.getImag() != 0)
+            // na passada provisória o expoente pode sair não real (1/0 tem parte
+            // imaginária NaN); a checagem fica para quando o valor for de verdade
+            Complex exponent = right.scalar("Expoente");
+            if (exponent.getImag() != 0 && placeholderDepth == 0)
                 throw new IllegalArgumentException("Expoente deve ser real.");
 
-            Complex val = left.value.pow(right.value.getReal());
+            Object val = (left.value instanceof Complex)
+                    ? ((Complex) left.value).pow(exponent.getReal())
+                    : ((ComplexArray) left.value).pow(exponent.getReal());
             Node node = new Node("^", left.node, right.node);
             return new Result(val, node);
         }
@@ -255,6 +404,11 @@ public class ExpressionParser {
             return inside;
         }
 
+        // Vetores e matrizes: [1, 2, 3] ou [[1, 2], [3, 4]]
+        if (c == '[') {
+            return parseArrayLiteral();
+        }
+
         // Números (reais ou complexos)
         if (Character.isDigit(c) || c == '.' || c == '+' || c == '-') {
             // Verificar se é um número (pode ser negativo ou positivo)
@@ -279,10 +433,7 @@ public class ExpressionParser {
             pos++;
             Result r = parsePrimary();
 
-            if (r.value.getImag() != 0)
-                throw new IllegalArgumentException("sqrt só suporta números reais.");
-
-            Complex val = Complex.sqrt(r.value.getReal());
+            Object val = applyFunction("sqrt", r.value);
             Node node = new Node("√", r.node);
             return new Result(val, node);
         }
@@ -298,7 +449,9 @@ public class ExpressionParser {
         for (int i = pos; i < expression.length(); i++) {
             char c = expression.charAt(i);
             if (c == 'i') {
-                hasImaginary = true;
+                // "i" seguido de letra é o início de um identificador (ex: 1+ifft(v))
+                hasImaginary = i + 1 >= expression.length() || !Character.isLetter(expression.charAt(i + 1))
+                        || wordBreaks.contains(i + 1);
                 break;
             }
             if (!Character.isDigit(c) && c != '.' && c != '+' && c != '-') {
@@ -351,54 +504,78 @@ public class ExpressionParser {
     }
 
     private Result parseIdentifier() {
-        int start = pos;
-        while (pos < expression.length() && Character.isLetter(expression.charAt(pos))) {
-            pos++;
-        }
+        boolean keyword = keywords.contains(pos);
+        String name = readIdentifier();
 
-        String name = expression.substring(start, pos);
+        if (keyword && name.equals("let"))
+            return parseLet();
 
         // Verificar se é uma função (tem parênteses logo após)
         if (pos < expression.length() && expression.charAt(pos) == '(') {
             // É uma função
             pos++; // Pular '('
-            Result arg = parseExpression();
+            if (name.equalsIgnoreCase("integrate") || name.equalsIgnoreCase("contour"))
+                return parseIntegral(name);
+            if (name.equalsIgnoreCase("sum") || name.equalsIgnoreCase("prod"))
+                return parseSeries(name);
 
-            if (pos >= expression.length() || expression.charAt(pos) != ')') {
-                throw new IllegalArgumentException("Parêntese não fechado na função " + name);
-            }
-            pos++; // Pular ')'
+            List<Result> args = parseArguments(name);
+
+            FunctionRegistry.Definition def = functions.get(name);
+            if (def != null)
+                return callFunction(def, args);
 
-            Complex val;
+            Object val;
             switch (name.toLowerCase()) {
-                case "sin":
-                    val = Complex.sin(arg.value);
+                case "dot": {
+                    requireArgs(name, args, 2);
+                    if (!(args.get(0).value instanceof ComplexVector) || !(args.get(1).value instanceof ComplexVector))
+                        throw new IllegalArgumentException("dot espera dois vetores.");
+                    val = ((ComplexVector) args.get(0).value).dot((ComplexVector) args.get(1).value);
                     break;
-                case "cos":
-                    val = Complex.cos(arg.value);
-                    break;
-                case "tan":
-                    val = Complex.tan(arg.value);
+                }
+                case "matmul": {
+                    requireArgs(name, args, 2);
+                    if (!(args.get(0).value instanceof ComplexMatrix))
+                        throw new IllegalArgumentException("matmul espera uma matriz como primeiro argumento.");
+                    ComplexMatrix a = (ComplexMatrix) args.get(0).value;
+                    Object b = args.get(1).value;
+                    if (b instanceof ComplexMatrix)
+                        val = a.multiply((ComplexMatrix) b);
+                    else if (b instanceof ComplexVector)
+                        val = a.multiply((ComplexVector) b);
+                    else
+                        throw new IllegalArgumentException("matmul espera uma matriz ou vetor como segundo argumento.");
                     break;
-                case "log":
-                    val = Complex.log(arg.value);
+                }
+                case "transpose": {
+                    requireArgs(name, args, 1);
+                    if (!(args.get(0).value instanceof ComplexMatrix))
+                        throw new IllegalArgumentException("transpose espera uma matriz.");
+                    val = ((ComplexMatrix) args.get(0).value).transpose();
                     break;
-                case "exp":
-                    val = Complex.exp(arg.value);
+                }
+                case "fft":
+                    requireArgs(name, args, 1);
+                    val = FFT.fft(vectorArg(name, args.get(0)));
                     break;
-                case "abs":
-                    val = new Complex(arg.value.abs(), 0);
+                case "ifft":
+                    requireArgs(name, args, 1);
+                    val = FFT.ifft(vectorArg(name, args.get(0)));
                     break;
-                case "sqrt":
-                    if (arg.value.getImag() != 0)
-                        throw new IllegalArgumentException("sqrt só suporta números reais.");
-                    val = Complex.sqrt(arg.value.getReal());
+                case "conv":
+                    requireArgs(name, args, 2);
+                    val = FFT.conv(vectorArg(name, args.get(0)), vectorArg(name, args.get(1)));
                     break;
                 default:
-                    throw new IllegalArgumentException("Função desconhecida: " + name);
+                    requireArgs(name, args, 1);
+                    val = applyFunction(name, args.get(0).value);
             }
 
-            Node node = new Node(name, arg.node);
+            Node[] argNodes = new Node[args.size()];
+            for (int k = 0; k < argNodes.length; k++)
+                argNodes[k] = args.get(k).node;
+            Node node = new Node(name, argNodes);
             return new Result(val, node);
         } else {
             // É uma variável
@@ -411,4 +588,294 @@ public class ExpressionParser {
             return new Result(val, node);
         }
     }
+
+    // Lê os argumentos separados por vírgula até o ')' (o '(' já foi consumido)
+    private List<Result> parseArguments(String name) {
+        List<Result> args = new ArrayList<>();
+        args.add(parseExpression());
+        while (pos < expression.length() && expression.charAt(pos) == ',') {
+            pos++;
+            args.add(parseExpression());
+        }
+
+        if (pos >= expression.length() || expression.charAt(pos) != ')') {
+            throw new IllegalArgumentException("Parêntese não fechado na função " + name);
+        }
+        pos++; // Pular ')'
+        return args;
+    }
+
+    // ==============================
+    // FUNÇÕES DO USUÁRIO E LET
+    // ==============================
+
+    // Chamada de função definida: os argumentos já foram avaliados uma vez cada, e o
+    // corpo roda na forma compilada guardada no registro, sem reanalisar o texto
+    private Result callFunction(FunctionRegistry.Definition def, List<Result> args) {
+        String name = def.getName();
+        requireArgs(name, args, def.arity());
+
+        Complex[] values = new Complex[args.size()];
+        Node[] argNodes = new Node[args.size()];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = args.get(k).scalar("Argumento de " + name);
+            argNodes[k] = args.get(k).node;
+        }
+        Node node = new Node(name, argNodes);
+        if (placeholderDepth > 0)
+            return new Result(new Complex(0, 0), node);
+        return new Result(def.getCompiled().evaluate(values), node);
+    }
+
+    // let t = valor in corpo  ->  (let t valor corpo), com o valor calculado uma só vez
+    private Result parseLet() {
+        String var = readIdentifier();
+        if (var.isEmpty() || isReservedName(var))
+            throw new IllegalArgumentException("Nome inválido em let: '" + var + "'");
+
+        if (pos >= expression.length() || expression.charAt(pos) != '=')
+            throw new IllegalArgumentException("Esperado '=' depois de let " + var);
+        pos++;
+        Result value = parseExpression();
+        Complex bound = value.scalar("O valor de " + var);
+        if (!isKeyword("in"))
+            throw new IllegalArgumentException("Esperado 'in' depois do valor de " + var);
+        pos += 2;
+
+        Complex previous = allVariables.put(var, bound);
+        try {
+            Result body = parseExpression();
+            Node node = new Node("let", new Node(var), value.node, body.node);
+            return new Result(body.value, node);
+        } finally {
+            if (previous == null)
+                allVariables.remove(var);
+            else
+                allVariables.put(var, previous);
+        }
+    }
+
+    // ==============================
+    // INTEGRAIS
+    // ==============================
+
+    // integrate(expr, x, a, b): segmento de a até b (reais ou complexos)
+    // contour(expr, z, centro, raio): círculo no sentido anti-horário
+    private Result parseIntegral(String name) {
+        String var = peekBoundVariable(name);
+        Result body = parseBoundBody(var);
+        body.scalar("O integrando");
+
+        expect(',', name);
+        pos += var.length(); // a variável já foi lida por peekBoundVariable
+        expect(',', name);
+        Result from = parseExpression();
+        expect(',', name);
+        Result to = parseExpression();
+        expect(')', name);
+
+        Node node = new Node(name, body.node, new Node(var), from.node, to.node);
+        if (placeholderDepth > 0)
+            return new Result(new Complex(0, 0), node);
+
+        // o integrando é compilado uma vez e avaliado pelo interpretador em cada ponto
+        CompiledExpression f = CompiledExpression.compile(body.node, allVariables, functions, var);
+        Integrator.Report report;
+        if (name.equalsIgnoreCase("integrate")) {
+            report = Integrator.segment(f, from.scalar("Limite de integração"), to.scalar("Limite de integração"));
+        } else {
+            Complex radius = to.scalar("O raio");
+            if (radius.getImag() != 0 || radius.getReal() <= 0)
+                throw new IllegalArgumentException("O raio deve ser real e positivo.");
+            report = Integrator.circle(f, from.scalar("O centro"), radius.getReal());
+        }
+        integrationReports.add(report);
+        return new Result(report.getValue(), node);
+    }
+
+    // ==============================
+    // SOMATÓRIOS E PRODUTÓRIOS
+    // ==============================
+
+    // sum(k, a, b, expr) e prod(k, a, b, expr), com k inteiro de a até b
+    private Result parseSeries(String name) {
+        int start = pos;
+        while (pos < expression.length() && Character.isLetter(expression.charAt(pos))) pos++;
+        if (pos == start)
+            throw new IllegalArgumentException("A função " + name + " espera o nome do índice como primeiro argumento.");
+        String var = expression.substring(start, pos);
+
+        expect(',', name);
+        Result from = parseExpression();
+        expect(',', name);
+        Result to = parseExpression();
+        expect(',', name);
+        Result body = parseBoundBody(var);
+        body.scalar("O termo de " + name);
+        expect(')', name);
+
+        Node node = new Node(name, new Node(var), from.node, to.node, body.node);
+        if (placeholderDepth > 0)
+            return new Result(new Complex(0, 0), node);
+
+        long lo = integerBound(from, name);
+        long hi = integerBound(to, name);
+
+        // o termo é compilado uma vez e o laço roda sobre a forma compilada
+        CompiledExpression f = CompiledExpression.compile(body.node, allVariables, functions, var);
+        Complex val = name.equalsIgnoreCase("sum") ? Series.sum(f, lo, hi) : Series.product(f, lo, hi);
+        return new Result(val, node);
+    }
+
+    private static long integerBound(Result r, String name) {
+        Complex c = r.scalar("Limite de " + name);
+        return Series.integerBound(c.getReal(), c.getImag(), name);
+    }
+
+    // Nome da variável ligada, que vem logo depois do primeiro argumento
+    private String peekBoundVariable(String name) {
+        int depth = 0;
+        for (int i = pos; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                if (depth == 0) break;
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                int end = i + 1;
+                while (end < expression.length() && Character.isLetter(expression.charAt(end))) end++;
+                if (end > i + 1) return expression.substring(i + 1, end);
+                break;
+            }
+        }
+        throw new IllegalArgumentException("A função " + name + " espera o nome da variável como segundo argumento.");
+    }
+
+    // O corpo é analisado com a variável ligada valendo 0, só para montar a AST;
+    // o valor calculado nessa passada é descartado. Somatórios e integrais internos
+    // não são calculados com esse valor provisório: isso fica para a forma compilada.
+    private Result parseBoundBody(String var) {
+        Complex previous = allVariables.put(var, new Complex(0, 0));
+        placeholderDepth++;
+        try {
+            return parseExpression();
+        } finally {
+            placeholderDepth--;
+            if (previous == null)
+                allVariables.remove(var);
+            else
+                allVariables.put(var, previous);
+        }
+    }
+
+    private void expect(char c, String name) {
+        if (pos >= expression.length() || expression.charAt(pos) != c)
+            throw new IllegalArgumentException("Esperado '" + c + "' na função " + name);
+        pos++;
+    }
+
+    private static void requireArgs(String name, List<Result> args, int count) {
+        if (args.size() != count)
+            throw new IllegalArgumentException("A função " + name + " espera " + count
+                    + (count == 1 ? " argumento" : " argumentos") + ", recebeu " + args.size());
+    }
+
+    private static ComplexVector vectorArg(String name, Result arg) {
+        if (!(arg.value instanceof ComplexVector))
+            throw new IllegalArgumentException(name + " espera um vetor.");
+        return (ComplexVector) arg.value;
+    }
+
+    private Result parseArrayLiteral() {
+        pos++; // Pular '['
+        List<Result> elements = new ArrayList<>();
+        elements.add(parseExpression());
+        while (pos < expression.length() && expression.charAt(pos) == ',') {
+            pos++;
+            elements.add(parseExpression());
+        }
+
+        if (pos >= expression.length() || expression.charAt(pos) != ']')
+            throw new IllegalArgumentException("Colchete não fechado");
+        pos++; // Pular ']'
+
+        Node[] nodes = new Node[elements.size()];
+        for (int k = 0; k < nodes.length; k++)
+            nodes[k] = elements.get(k).node;
+
+        if (elements.get(0).value instanceof Complex) {
+            List<Complex> values = new ArrayList<>();
+            for (Result e : elements)
+                values.add(e.scalar("Elemento de vetor"));
+            return new Result(ComplexVector.of(values), new Node("vec", nodes));
+        }
+
+        if (elements.get(0).value instanceof ComplexVector) {
+            List<ComplexVector> rows = new ArrayList<>();
+            for (Result e : elements) {
+                if (!(e.value instanceof ComplexVector))
+                    throw new IllegalArgumentException("Linha de matriz deve ser um vetor.");
+                rows.add((ComplexVector) e.value);
+            }
+            return new Result(ComplexMatrix.ofRows(rows), new Node("mat", nodes));
+        }
+
+        throw new IllegalArgumentException("Elemento de vetor deve ser escalar ou vetor.");
+    }
+
+    // ==============================
+    // OPERAÇÕES COM BROADCAST
+    // ==============================
+    private static Object arithmetic(char op, Object a, Object b) {
+        if (a instanceof Complex && b instanceof Complex) {
+            Complex x = (Complex) a;
+            Complex y = (Complex) b;
+            switch (op) {
+                case '+': return x.plus(y);
+                case '-': return x.minus(y);
+                case '*': return x.times(y);
+                default: return x.divide(y);
+            }
+        }
+        if (a instanceof ComplexArray && b instanceof ComplexArray)
+            return ((ComplexArray) a).combine(op, (ComplexArray) b);
+        if (a instanceof ComplexArray)
+            return ((ComplexArray) a).combine(op, (Complex) b);
+        return ((ComplexArray) b).combineLeft(op, (Complex) a);
+    }
+
+    // Funções de um argumento, aplicadas elemento a elemento em vetores e matrizes
+    private Object applyFunction(String name, Object arg) {
+        if (!isKnownFunction(name))
+            throw new IllegalArgumentException("Função desconhecida: " + name);
+
+        String fn = name.toLowerCase();
+        if (arg instanceof Complex)
+            return applyScalarFunction(fn, (Complex) arg);
+        return ((ComplexArray) arg).map(z -> applyScalarFunction(fn, z));
+    }
+
+    private Complex applyScalarFunction(String fn, Complex z) {
+        switch (fn) {
+            case "sin":
+                return Complex.sin(z);
+            case "cos":
+                return Complex.cos(z);
+            case "tan":
+                return Complex.tan(z);
+            case "log":
+                return Complex.log(z);
+            case "exp":
+                return Complex.exp(z);
+            case "abs":
+                return new Complex(z.abs(), 0);
+            case "sqrt":
+                if (z.getImag() != 0 && placeholderDepth == 0)
+                    throw new IllegalArgumentException("sqrt só suporta números reais.");
+                return Complex.sqrt(z.getReal());
+            default:
+                throw new IllegalArgumentException("Função desconhecida: " + fn);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+// FFT.java
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Transformada rápida de Fourier sobre arrays separados (parte real / imaginária).
+ *
+ * Tamanhos potência de 2 usam o radix-2 iterativo in-place; os demais tamanhos
+ * usam o algoritmo de Bluestein, que reescreve a DFT como uma convolução de
+ * tamanho potência de 2. A inversa é feita pela identidade
+ * ifft(x) = conj(fft(conj(x))) / n, então só existe o núcleo direto.
+ */
+public final class FFT {
+
+    // estágios com blocos até esse tamanho rodam inteiros dentro de um chunk (cabe no L1/L2)
+    private static final int CHUNK = 1 << 12;
+    // a partir desse tamanho os estágios são divididos entre as threads do ForkJoinPool
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+    // abaixo desse custo (n * m) a convolução direta é mais rápida que a via FFT
+    private static final int DIRECT_CONV_LIMIT = 1 << 12;
+
+    // quantos planos de Bluestein ficam guardados (os usados mais recentemente)
+    private static final int BLUESTEIN_PLANS = 4;
+
+    // cos/sin de 2*pi*k/N para k < N/2, só para o maior tamanho N (potência de 2) já
+    // pedido; um tamanho n menor lê as entradas de passo N/n, que são as mesmas bit a bit
+    private static volatile double[][] twiddleTable = {new double[0], new double[0]};
+    // chirp e FFT do núcleo de Bluestein, por tamanho n, em ordem de uso
+    private static final Map<Integer, Bluestein> BLUESTEIN = new LinkedHashMap<Integer, Bluestein>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Bluestein> eldest) {
+            return size() > BLUESTEIN_PLANS;
+        }
+    };
+
+    private FFT() {
+    }
+
+    // ==============================
+    // API SOBRE VETORES
+    // ==============================
+    public static ComplexVector fft(ComplexVector x) {
+        double[] re = x.re.clone();
+        double[] im = x.im.clone();
+        transform(re, im);
+        return new ComplexVector(re, im);
+    }
+
+    public static ComplexVector ifft(ComplexVector x) {
+        double[] re = x.re.clone();
+        double[] im = x.im.clone();
+        inverseTransform(re, im);
+        return new ComplexVector(re, im);
+    }
+
+    /** Convolução linear: o resultado tem tamanho a.length() + b.length() - 1. */
+    public static ComplexVector conv(ComplexVector a, ComplexVector b) {
+        int n = a.length();
+        int m = b.length();
+        int outLen = n + m - 1;
+
+        if ((long) n * m <= DIRECT_CONV_LIMIT) {
+            double[] outR = new double[outLen];
+            double[] outI = new double[outLen];
+            for (int i = 0; i < n; i++) {
+                double ar = a.re[i], ai = a.im[i];
+                for (int j = 0; j < m; j++) {
+                    outR[i + j] += ar * b.re[j] - ai * b.im[j];
+                    outI[i + j] += ar * b.im[j] + ai * b.re[j];
+                }
+            }
+            return new ComplexVector(outR, outI);
+        }
+
+        int size = nextPowerOfTwo(outLen);
+        double[] ar = Arrays.copyOf(a.re, size);
+        double[] ai = Arrays.copyOf(a.im, size);
+        double[] br = Arrays.copyOf(b.re, size);
+        double[] bi = Arrays.copyOf(b.im, size);
+        radix2(ar, ai);
+        radix2(br, bi);
+        ComplexKernels.binary('*', ar, ai, br, bi, ar, ai, size);
+        inverseTransform(ar, ai);
+        return new ComplexVector(Arrays.copyOf(ar, outLen), Arrays.copyOf(ai, outLen));
+    }
+
+    // ==============================
+    // NÚCLEO IN-PLACE
+    // ==============================
+
+    /** DFT direta in-place: X[k] = soma de x[j] * exp(-2*pi*i*j*k/n). */
+    public static void transform(double[] re, double[] im) {
+        int n = re.length;
+        if (n <= 1) return;
+        if (isPowerOfTwo(n))
+            radix2(re, im);
+        else
+            bluestein(re, im);
+    }
+
+    public static void inverseTransform(double[] re, double[] im) {
+        int n = re.length;
+        if (n == 0) return;
+        for (int k = 0; k < n; k++) im[k] = -im[k];
+        transform(re, im);
+        double s = 1.0 / n;
+        for (int k = 0; k < n; k++) {
+            re[k] = re[k] * s;
+            im[k] = -im[k] * s;
+        }
+    }
+
+    private static void radix2(double[] re, double[] im) {
+        int n = re.length;
+        double[][] tw = twiddles(n);
+        double[] cos = tw[0];
+        double[] sin = tw[1];
+        int tableSize = 2 * cos.length;
+
+        bitReverse(re, im);
+
+        boolean parallel = n >= PARALLEL_THRESHOLD;
+        int chunk = Math.min(n, CHUNK);
+
+        // estágios pequenos: cada chunk é independente e passa por todos eles de uma vez
+        IntStream chunks = IntStream.range(0, n / chunk);
+        if (parallel) chunks = chunks.parallel();
+        chunks.forEach(c -> {
+            int from = c * chunk;
+            for (int len = 2; len <= chunk; len <<= 1)
+                butterflies(re, im, cos, sin, tableSize, len, from / 2, (from + chunk) / 2);
+        });
+
+        // estágios grandes: as n/2 borboletas de cada estágio são divididas em faixas
+        int half = n / 2;
+        int tasks = parallel ? Math.max(1, half / CHUNK) : 1;
+        for (int len = chunk << 1; len <= n; len <<= 1) {
+            int stageLen = len;
+            IntStream parts = IntStream.range(0, tasks);
+            if (parallel) parts = parts.parallel();
+            parts.forEach(t -> butterflies(re, im, cos, sin, tableSize, stageLen,
+                    (int) ((long) half * t / tasks), (int) ((long) half * (t + 1) / tasks)));
+        }
+    }
+
+    // Borboletas de índice p em [from, to) do estágio de tamanho len; a tabela de
+    // twiddles tem tamanho tableSize
+    private static void butterflies(double[] re, double[] im, double[] cos, double[] sin,
+                                    int tableSize, int len, int from, int to) {
+        int h = len >> 1;
+        int step = tableSize / len;
+        int p = from;
+        while (p < to) {
+            int block = p / h;
+            int j = p - block * h;
+            int base = block * len;
+            int jEnd = Math.min(h, j + (to - p));
+            for (; j < jEnd; j++) {
+                int a = base + j;
+                int b = a + h;
+                double wr = cos[j * step];
+                double wi = -sin[j * step];
+                double tr = re[b] * wr - im[b] * wi;
+                double ti = re[b] * wi + im[b] * wr;
+                re[b] = re[a] - tr;
+                im[b] = im[a] - ti;
+                re[a] += tr;
+                im[a] += ti;
+                p++;
+            }
+        }
+    }
+
+    private static void bitReverse(double[] re, double[] im) {
+        int n = re.length;
+        int shift = 32 - Integer.numberOfTrailingZeros(n);
+        for (int k = 0; k < n; k++) {
+            int r = Integer.reverse(k) >>> shift;
+            if (r > k) {
+                double t = re[k]; re[k] = re[r]; re[r] = t;
+                t = im[k]; im[k] = im[r]; im[r] = t;
+            }
+        }
+    }
+
+    // Tabela de tamanho N >= n. Como N/n é potência de 2, 2*pi*(k*N/n)/N arredonda
+    // igual a 2*pi*k/n, e a tabela maior dá os mesmos valores que uma de tamanho n.
+    private static double[][] twiddles(int n) {
+        double[][] tw = twiddleTable;
+        if (2 * tw[0].length >= n)
+            return tw;
+        synchronized (FFT.class) {
+            tw = twiddleTable;
+            if (2 * tw[0].length >= n)
+                return tw;
+            int h = n / 2;
+            double[] cos = new double[h];
+            double[] sin = new double[h];
+            for (int k = 0; k < h; k++) {
+                double angle = 2 * Math.PI * k / n;
+                cos[k] = Math.cos(angle);
+                sin[k] = Math.sin(angle);
+            }
+            twiddleTable = tw = new double[][]{cos, sin};
+            return tw;
+        }
+    }
+
+    // ==============================
+    // BLUESTEIN (TAMANHO ARBITRÁRIO)
+    // ==============================
+    private static final class Bluestein {
+        final int size;
+        final double[] chirpRe, chirpIm;     // w[k] = exp(-i*pi*k^2/n)
+        final double[] kernelRe, kernelIm;   // FFT de conj(w) estendido circularmente
+
+        Bluestein(int n) {
+            size = nextPowerOfTwo(2 * n - 1);
+            chirpRe = new double[n];
+            chirpIm = new double[n];
+            for (int k = 0; k < n; k++) {
+                // k^2 mod 2n mantém o ângulo pequeno e preciso mesmo para k grande
+                long k2 = ((long) k * k) % (2L * n);
+                double angle = Math.PI * k2 / n;
+                chirpRe[k] = Math.cos(angle);
+                chirpIm[k] = -Math.sin(angle);
+            }
+
+            kernelRe = new double[size];
+            kernelIm = new double[size];
+            kernelRe[0] = chirpRe[0];
+            kernelIm[0] = -chirpIm[0];
+            for (int k = 1; k < n; k++) {
+                kernelRe[k] = kernelRe[size - k] = chirpRe[k];
+                kernelIm[k] = kernelIm[size - k] = -chirpIm[k];
+            }
+            radix2(kernelRe, kernelIm);
+        }
+    }
+
+    // O plano é montado fora do lock; duas threads podem montar o mesmo ao mesmo tempo
+    private static Bluestein bluesteinPlan(int n) {
+        synchronized (BLUESTEIN) {
+            Bluestein plan = BLUESTEIN.get(n);
+            if (plan != null) return plan;
+        }
+        Bluestein plan = new Bluestein(n);
+        synchronized (BLUESTEIN) {
+            BLUESTEIN.put(n, plan);
+        }
+        return plan;
+    }
+
+    private static void bluestein(double[] re, double[] im) {
+        int n = re.length;
+        Bluestein plan = bluesteinPlan(n);
+        int size = plan.size;
+
+        double[] ar = new double[size];
+        double[] ai = new double[size];
+        ComplexKernels.binary('*', re, im, plan.chirpRe, plan.chirpIm, ar, ai, n);
+
+        radix2(ar, ai);
+        ComplexKernels.binary('*', ar, ai, plan.kernelRe, plan.kernelIm, ar, ai, size);
+        inverseTransform(ar, ai);
+
+        ComplexKernels.binary('*', ar, ai, plan.chirpRe, plan.chirpIm, re, im, n);
+    }
+
+    // ==============================
+    // AUXILIARES
+    // ==============================
+    static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    static int nextPowerOfTwo(int n) {
+        int p = Integer.highestOneBit(n);
+        return p == n ? n : p << 1;
+    }
+}
@@ -0,0 +1,206 @@
+// FunctionRegistry.java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Funções definidas pelo usuário, como {@code f(z) = z^2 + 1}.
+ *
+ * Cada definição é analisada uma única vez: o registro guarda a AST do corpo e a
+ * forma compilada, e as chamadas nunca reanalisam o texto. O corpo só pode usar
+ * os próprios parâmetros, a constante i e funções já definidas. Definições
+ * recursivas, diretas ou através de outras funções, são recusadas na hora da
+ * definição.
+ */
+public class FunctionRegistry {
+
+    private static final Pattern DEFINITION = Pattern.compile(
+            "\\s*([A-Za-z]+)\\s*\\(\\s*([A-Za-z]+(?:\\s*,\\s*[A-Za-z]+)*)\\s*\\)\\s*=(.+)", Pattern.DOTALL);
+
+    private final Map<String, Definition> functions = new LinkedHashMap<>();
+    // formas compiladas novas durante uma redefinição, ainda não instaladas
+    private final Map<String, CompiledExpression> pending = new HashMap<>();
+
+    // ==============================
+    // DEFINIÇÃO
+    // ==============================
+    public static final class Definition {
+        private final String name;
+        private final String[] params;
+        private final ExpressionParser.Node body;
+        private final Set<String> callees;
+        private final String text;
+        private CompiledExpression compiled;
+
+        Definition(String name, String[] params, ExpressionParser.Node body, Set<String> callees, String text) {
+            this.name = name;
+            this.params = params;
+            this.body = body;
+            this.callees = callees;
+            this.text = text;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int arity() {
+            return params.length;
+        }
+
+        public ExpressionParser.Node getBody() {
+            return body;
+        }
+
+        /** Corpo compilado, com as chamadas a outras funções já expandidas (inline). */
+        public synchronized CompiledExpression getCompiled() {
+            return compiled;
+        }
+
+        String param(int k) {
+            return params[k];
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Define (ou redefine) uma função a partir de um texto como {@code f(x, y) = x*y + 1}.
+     * As funções que dependem desta são recompiladas para usar a nova versão; se
+     * alguma deixar de compilar, a redefinição é recusada e o registro fica como estava.
+     */
+    public synchronized Definition define(String text) {
+        Matcher m = DEFINITION.matcher(text == null ? "" : text);
+        if (!m.matches())
+            throw new IllegalArgumentException("Definição inválida, use por exemplo: f(z) = z^2 + 1");
+
+        String name = m.group(1);
+        if (ExpressionParser.isReservedName(name))
+            throw new IllegalArgumentException("Nome reservado: " + name);
+
+        String[] params = m.group(2).split("\\s*,\\s*");
+        Set<String> seen = new LinkedHashSet<>();
+        for (String p : params) {
+            if (p.equals("i"))
+                throw new IllegalArgumentException("i é a unidade imaginária e não pode ser parâmetro.");
+            if (!seen.add(p))
+                throw new IllegalArgumentException("Parâmetro repetido: " + p);
+        }
+
+        String bodyText = m.group(3);
+        if (Pattern.compile("(?<![A-Za-z])" + name + "\\s*\\(").matcher(bodyText).find())
+            throw new IllegalArgumentException("Definição recursiva: " + name + " chama a si mesma.");
+
+        // o corpo é analisado com os parâmetros valendo 0, só para montar e validar a AST
+        Map<String, Complex> placeholders = new HashMap<>();
+        for (String p : params)
+            placeholders.put(p, new Complex(0, 0));
+        ExpressionParser parser = new ExpressionParser(bodyText, placeholders, this);
+        if (!(parser.evaluatePlaceholder() instanceof Complex))
+            throw new IllegalArgumentException("O corpo de " + name + " deve ser escalar.");
+        ExpressionParser.Node body = parser.getAstRoot();
+
+        Set<String> callees = new LinkedHashSet<>();
+        collectCalls(body, callees);
+        for (String callee : callees) {
+            if (dependsOn(callee, name))
+                throw new IllegalArgumentException("Definição recursiva: " + callee + " já depende de " + name + ".");
+        }
+
+        Definition def = new Definition(name, params, body, callees, text.trim());
+        def.compiled = compile(def);
+
+        // os dependentes são compilados contra a nova definição antes de qualquer troca
+        Definition previous = functions.put(name, def);
+        try {
+            for (Definition other : dependents(name)) {
+                try {
+                    pending.put(other.name, compile(other));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Redefinição de " + name + " recusada: " + other.name
+                            + " deixaria de funcionar (" + e.getMessage() + ")");
+                }
+            }
+        } catch (RuntimeException e) {
+            if (previous == null)
+                functions.remove(name);
+            else
+                functions.put(name, previous);
+            pending.clear();
+            throw e;
+        }
+
+        for (Map.Entry<String, CompiledExpression> e : pending.entrySet()) {
+            Definition other = functions.get(e.getKey());
+            synchronized (other) {
+                other.compiled = e.getValue();
+            }
+        }
+        pending.clear();
+        return def;
+    }
+
+    private CompiledExpression compile(Definition def) {
+        return CompiledExpression.compile(def.body, null, this, def.params);
+    }
+
+    /** Forma compilada usada por quem chama {@code def}, incluindo a de uma redefinição em andamento. */
+    synchronized CompiledExpression compiledFor(Definition def) {
+        CompiledExpression c = pending.get(def.name);
+        return c != null ? c : def.getCompiled();
+    }
+
+    // Funções que dependem de "name", cada uma depois das que ela chama
+    private List<Definition> dependents(String name) {
+        List<Definition> out = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (Definition d : functions.values())
+            visitDependents(d, name, visited, out);
+        return out;
+    }
+
+    private void visitDependents(Definition d, String name, Set<String> visited, List<Definition> out) {
+        if (!visited.add(d.name)) return;
+        for (String callee : d.callees) {
+            Definition c = functions.get(callee);
+            if (c != null) visitDependents(c, name, visited, out);
+        }
+        if (!d.name.equals(name) && dependsOn(d.name, name))
+            out.add(d);
+    }
+
+    // Funções definidas pelo usuário chamadas diretamente na AST
+    private void collectCalls(ExpressionParser.Node n, Set<String> out) {
+        if (!n.children.isEmpty() && functions.containsKey(n.token))
+            out.add(n.token);
+        for (ExpressionParser.Node c : n.children)
+            collectCalls(c, out);
+    }
+
+    // true se "from" chama "target", direta ou indiretamente
+    private boolean dependsOn(String from, String target) {
+        if (from.equals(target)) return true;
+        Definition d = functions.get(from);
+        if (d == null) return false;
+        for (String callee : d.callees)
+            if (dependsOn(callee, target)) return true;
+        return false;
+    }
+
+    // ==============================
+    // CONSULTA
+    // ==============================
+    public synchronized Definition get(String name) {
+        return functions.get(name);
+    }
+}
@@ -0,0 +1,480 @@
+// HistoryStore.java
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histórico persistente de avaliações, gravado como um log só de acréscimo
+ * (append-only) em um arquivo mapeado em memória.
+ *
+ * Formato: cabeçalho (magic, versão) seguido de registros
+ * {@code [int tamanho][payload]}. Um tamanho 0 marca o fim do log; como o
+ * tamanho é escrito depois do payload, um registro interrompido no meio nunca
+ * fica visível. O arquivo é sincronizado com o disco periodicamente e no
+ * {@link #close()}.
+ *
+ * A posição de cada registro fica em um arquivo auxiliar ({@code .idx}), também
+ * mapeado: {@code [magic][versão][quantidade][fim][int offset]...}. Ao abrir,
+ * os dois arquivos são só mapeados; os registros são percorridos apenas depois
+ * do fim indicado pelo índice (o que foi gravado depois da última atualização
+ * dele) ou todos, se o índice estiver ausente ou não bater com o log. O índice
+ * de prefixos é montado em segundo plano logo depois (ou na primeira busca, o
+ * que vier antes), e cada registro só é decodificado quando a entrada é pedida.
+ *
+ * O log é aberto com um lock exclusivo: se outra janela ou processo já estiver
+ * usando o arquivo, {@link #open(Path)} falha em vez de as duas instâncias
+ * sobrescreverem os registros uma da outra.
+ */
+public class HistoryStore implements Closeable {
+
+    private static final int MAGIC = 0x43414C48; // "CALH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_MAPPING = 1 << 20;
+    private static final int INDEX_MAGIC = 0x43414C49; // "CALI"
+    private static final int INDEX_HEADER_SIZE = 16;
+    private static final int INITIAL_INDEX_MAPPING = 1 << 16;
+    private static final long SYNC_INTERVAL_MS = 2000;
+    // entradas indexadas por vez em segundo plano, para não segurar o lock por muito tempo
+    private static final int INDEX_BATCH = 10_000;
+
+    private final FileChannel channel;
+    private final FileChannel indexChannel;
+    private final ScheduledExecutorService syncer;
+    private MappedByteBuffer buffer;
+    private int writePos;
+    private boolean dirty;
+
+    // posição de cada registro no log, na ordem em que foram gravados (arquivo .idx)
+    private MappedByteBuffer offsets;
+    private int count;
+    // expressão -> ids das entradas com essa expressão, para busca por prefixo;
+    // cobre as entradas [0, indexed)
+    private final NavigableMap<String, IdList> index = new TreeMap<>();
+    private int indexed;
+
+    // ==============================
+    // ENTRADA DO HISTÓRICO
+    // ==============================
+    public static final class Entry {
+        private final int id;
+        private final long timestamp;
+        private final String expression;
+        private final Map<String, Complex> variables;
+        private final String result;
+        private final String lispTree;
+
+        Entry(int id, long timestamp, String expression, Map<String, Complex> variables, String result, String lispTree) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.expression = expression;
+            this.variables = variables;
+            this.result = result;
+            this.lispTree = lispTree;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        public Map<String, Complex> getVariables() {
+            return Collections.unmodifiableMap(variables);
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        public String getLispTree() {
+            return lispTree;
+        }
+
+        @Override
+        public String toString() {
+            String s = expression + " = " + result;
+            if (!variables.isEmpty())
+                s += "   " + variables;
+            return s;
+        }
+    }
+
+    private static final class IdList {
+        int[] ids = new int[1];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    // ==============================
+    // ABERTURA / RECARGA
+    // ==============================
+    private HistoryStore(Path file) throws IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel idx = null;
+        try {
+            lock(file);
+            idx = FileChannel.open(file.resolveSibling(file.getFileName() + ".idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            indexChannel = idx;
+            load(file);
+        } catch (IOException | RuntimeException e) {
+            if (idx != null) idx.close();
+            channel.close();
+            throw e;
+        }
+
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "historico-fsync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        syncer.execute(this::indexInBackground);
+    }
+
+    public static HistoryStore open(Path file) throws IOException {
+        return new HistoryStore(file);
+    }
+
+    // O lock é liberado quando o canal é fechado
+    private void lock(Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // já travado por outra instância nesta mesma JVM
+        }
+        if (lock == null)
+            throw new IOException("Histórico em uso por outra janela ou processo: " + file);
+    }
+
+    private void load(Path file) throws IOException {
+        long existing = channel.size();
+        if (existing > Integer.MAX_VALUE)
+            throw new IOException("Arquivo de histórico grande demais: " + file);
+        map((int) Math.max(existing, INITIAL_MAPPING));
+
+        long existingIndex = indexChannel.size();
+        if (existingIndex > Integer.MAX_VALUE)
+            throw new IOException("Índice do histórico grande demais: " + file);
+        mapIndex((int) Math.max(existingIndex, INITIAL_INDEX_MAPPING));
+
+        if (existing < HEADER_SIZE) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            resetIndex();
+            dirty = true;
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Arquivo de histórico inválido: " + file);
+
+        if (indexMatchesLog()) {
+            count = offsets.getInt(8);
+            writePos = offsets.getInt(12);
+        } else {
+            resetIndex();
+        }
+        scan();
+    }
+
+    private void map(int size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void mapIndex(int size) throws IOException {
+        offsets = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    // O índice vale se o último registro que ele aponta termina exatamente no fim gravado nele
+    private boolean indexMatchesLog() {
+        if (offsets.getInt(0) != INDEX_MAGIC || offsets.getInt(4) != VERSION) return false;
+        int n = offsets.getInt(8);
+        int end = offsets.getInt(12);
+        if (n < 0 || (long) INDEX_HEADER_SIZE + 4L * n > offsets.capacity()) return false;
+        if (end < HEADER_SIZE || end > buffer.capacity()) return false;
+        if (n == 0) return end == HEADER_SIZE;
+
+        int last = offsets.getInt(INDEX_HEADER_SIZE + 4 * (n - 1));
+        return last >= HEADER_SIZE && last + 4 <= end && buffer.getInt(last) == end - last - 4;
+    }
+
+    private void resetIndex() {
+        count = 0;
+        writePos = HEADER_SIZE;
+        offsets.putInt(0, INDEX_MAGIC);
+        offsets.putInt(4, VERSION);
+        offsets.putInt(8, 0);
+        offsets.putInt(12, HEADER_SIZE);
+    }
+
+    // Percorre os registros gravados depois do fim conhecido pelo índice
+    private void scan() throws IOException {
+        int pos = writePos;
+        int limit = buffer.capacity();
+        while (pos + 4 <= limit) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + 4 + length > limit) break;
+            addOffset(pos, pos + 4 + length);
+            pos += 4 + length;
+        }
+        writePos = pos;
+    }
+
+    // A quantidade é gravada por último, como o tamanho dos registros no log
+    private void addOffset(int offset, int end) throws IOException {
+        long needed = INDEX_HEADER_SIZE + 4L * (count + 1);
+        if (needed > offsets.capacity()) {
+            if (needed > Integer.MAX_VALUE)
+                throw new IOException("Índice do histórico atingiu o tamanho máximo de um mapeamento.");
+            long size = offsets.capacity();
+            while (size < needed) size *= 2;
+            offsets.force();
+            mapIndex((int) Math.min(size, Integer.MAX_VALUE));
+        }
+        offsets.putInt(INDEX_HEADER_SIZE + 4 * count, offset);
+        offsets.putInt(12, end);
+        offsets.putInt(8, count + 1);
+        count++;
+        dirty = true;
+    }
+
+    private int offset(int id) {
+        return offsets.getInt(INDEX_HEADER_SIZE + 4 * id);
+    }
+
+    // Um lote por tarefa: o fsync periódico roda na mesma thread e, quando vence,
+    // passa na frente do próximo lote em vez de esperar a indexação inteira
+    private void indexInBackground() {
+        if (!indexBatch()) return;
+        try {
+            syncer.execute(this::indexInBackground);
+        } catch (RejectedExecutionException e) {
+            // o histórico foi fechado no meio da indexação
+        }
+    }
+
+    // Indexa um lote; devolve true se ainda há entradas pendentes. O lock é solto
+    // entre os lotes para que append() não espere a indexação inteira.
+    private synchronized boolean indexBatch() {
+        indexUpTo(Math.min(count, indexed + INDEX_BATCH));
+        return indexed < count;
+    }
+
+    private void indexUpTo(int end) {
+        while (indexed < end) {
+            // o payload começa com o timestamp (8 bytes) e a expressão
+            String expression = readString(offset(indexed) + 4 + 8);
+            index.computeIfAbsent(expression, e -> new IdList()).add(indexed);
+            indexed++;
+        }
+    }
+
+    // ==============================
+    // GRAVAÇÃO
+    // ==============================
+    public synchronized Entry append(String expression, Map<String, Complex> variables, String result, String lispTree)
+            throws IOException {
+        Map<String, Complex> vars = new LinkedHashMap<>(new TreeMap<>(variables == null ? Map.of() : variables));
+        long timestamp = System.currentTimeMillis();
+
+        byte[] expr = utf8(expression);
+        byte[] res = utf8(result);
+        byte[] lisp = utf8(lispTree);
+        List<byte[]> names = new ArrayList<>();
+        int length = 8 + 4 + expr.length + 4 + 4 + res.length + 4 + lisp.length;
+        for (String name : vars.keySet()) {
+            byte[] n = utf8(name);
+            names.add(n);
+            length += 4 + n.length + 16;
+        }
+
+        // + 4 para o marcador de fim (tamanho 0) depois do registro
+        ensureCapacity((long) writePos + 4 + length + 4);
+
+        int offset = writePos;
+        int p = offset + 4;
+        buffer.putLong(p, timestamp);
+        p += 8;
+        p = putBytes(p, expr);
+        buffer.putInt(p, vars.size());
+        p += 4;
+        int k = 0;
+        for (Complex value : vars.values()) {
+            p = putBytes(p, names.get(k++));
+            buffer.putDouble(p, value.getReal());
+            buffer.putDouble(p + 8, value.getImag());
+            p += 16;
+        }
+        p = putBytes(p, res);
+        p = putBytes(p, lisp);
+        buffer.putInt(p, 0);
+
+        // o tamanho por último: só agora o registro passa a fazer parte do log
+        buffer.putInt(offset, length);
+        writePos = p;
+        dirty = true;
+
+        addOffset(offset, writePos);
+        return new Entry(count - 1, timestamp, expression, vars, result, lispTree);
+    }
+
+    private void ensureCapacity(long needed) throws IOException {
+        if (needed <= buffer.capacity()) return;
+        if (needed > Integer.MAX_VALUE)
+            throw new IOException("Histórico atingiu o tamanho máximo de um mapeamento.");
+
+        long size = buffer.capacity();
+        while (size < needed) size *= 2;
+        buffer.force();
+        map((int) Math.min(size, Integer.MAX_VALUE));
+    }
+
+    private int putBytes(int p, byte[] bytes) {
+        buffer.putInt(p, bytes.length);
+        ByteBuffer view = buffer.duplicate();
+        view.position(p + 4);
+        view.put(bytes);
+        return p + 4 + bytes.length;
+    }
+
+    /** Força a gravação das páginas alteradas no disco (fsync). */
+    public synchronized void sync() {
+        if (!dirty) return;
+        buffer.force();
+        offsets.force();
+        dirty = false;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            // a próxima rodada tenta de novo; close() também sincroniza
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        syncer.shutdownNow();
+        sync();
+        indexChannel.close();
+        channel.close();
+    }
+
+    // ==============================
+    // CONSULTA
+    // ==============================
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized Entry get(int id) {
+        if (id < 0 || id >= count)
+            throw new IndexOutOfBoundsException("Entrada inexistente: " + id);
+
+        int p = offset(id) + 4;
+        long timestamp = buffer.getLong(p);
+        p += 8;
+        String expression = readString(p);
+        p += 4 + buffer.getInt(p);
+
+        int varCount = buffer.getInt(p);
+        p += 4;
+        Map<String, Complex> vars = new LinkedHashMap<>();
+        for (int k = 0; k < varCount; k++) {
+            String name = readString(p);
+            p += 4 + buffer.getInt(p);
+            vars.put(name, new Complex(buffer.getDouble(p), buffer.getDouble(p + 8)));
+            p += 16;
+        }
+
+        String result = readString(p);
+        p += 4 + buffer.getInt(p);
+        String lisp = readString(p);
+        return new Entry(id, timestamp, expression, vars, result, lisp);
+    }
+
+    /**
+     * Entradas cuja expressão começa com {@code prefix}, da mais recente para a
+     * mais antiga, no máximo {@code limit}.
+     */
+    public List<Entry> search(String prefix, int limit) {
+        List<Entry> out = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) {
+            synchronized (this) {
+                for (int id = count - 1; id >= 0 && out.size() < limit; id--)
+                    out.add(get(id));
+            }
+            return out;
+        }
+
+        while (indexBatch()) {
+            // coloca no índice de prefixos as entradas ainda não indexadas
+        }
+        synchronized (this) {
+            indexUpTo(count);
+            return searchIndexed(prefix, limit, out);
+        }
+    }
+
+    private List<Entry> searchIndexed(String prefix, int limit, List<Entry> out) {
+        int[] ids = new int[0];
+        int n = 0;
+        for (IdList list : index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (n + list.size > ids.length) ids = Arrays.copyOf(ids, Math.max(ids.length * 2, n + list.size));
+            System.arraycopy(list.ids, 0, ids, n, list.size);
+            n += list.size;
+        }
+        Arrays.sort(ids, 0, n);
+        for (int k = n - 1; k >= 0 && out.size() < limit; k--)
+            out.add(get(ids[k]));
+        return out;
+    }
+
+    private String readString(int p) {
+        int length = buffer.getInt(p);
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(p + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String s) {
+        return (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,293 @@
+// Integrator.java
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Integração numérica adaptativa por Gauss–Kronrod (7 e 15 pontos).
+ *
+ * Todas as integrais são feitas sobre um parâmetro real t: um caminho z(t) leva t
+ * ao plano complexo e o integrando é f(z(t)) * z'(t). Assim a integral real em
+ * [a, b], a integral ao longo de um segmento entre dois complexos e a integral
+ * de contorno em um círculo usam o mesmo núcleo.
+ *
+ * Cada subintervalo cuja estimativa de erro passa da sua parte da tolerância é
+ * dividido ao meio, e as duas metades são refinadas em paralelo no ForkJoinPool.
+ * A árvore de divisões e a ordem das somas não dependem do escalonamento das
+ * threads, então o resultado é o mesmo a cada execução (enquanto o limite de
+ * avaliações não é atingido; nesse caso o relatório indica que não convergiu).
+ */
+public final class Integrator {
+
+    private static final double ABS_TOL = 1e-12;
+    private static final double REL_TOL = 1e-10;
+    private static final int MAX_DEPTH = 40;
+    private static final long MAX_EVALUATIONS = 2_000_000;
+    private static final double SQRT1_2 = Math.sqrt(0.5);
+
+    // nós e pesos de Kronrod (15 pontos) em [-1, 1]; os de índice ímpar são os de Gauss
+    private static final double[] XGK = {
+            0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+            0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+            0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+            0.207784955007898467600689403773245, 0.000000000000000000000000000000000
+    };
+    private static final double[] WGK = {
+            0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+            0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+            0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+            0.204432940075298892414161999234649, 0.209482141084727828012999174891714
+    };
+    // pesos de Gauss (7 pontos) para XGK[1], XGK[3], XGK[5] e XGK[7]
+    private static final double[] WG = {
+            0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+            0.381830050505118944950369775488975, 0.417959183673469387755102040816327
+    };
+
+    private Integrator() {
+    }
+
+    // ==============================
+    // RESULTADO
+    // ==============================
+    public static final class Report {
+        private final String description;
+        private final Complex value;
+        private final double errorEstimate;
+        private final long evaluations;
+        private final boolean converged;
+
+        Report(String description, Complex value, double errorEstimate, long evaluations, boolean converged) {
+            this.description = description;
+            this.value = value;
+            this.errorEstimate = errorEstimate;
+            this.evaluations = evaluations;
+            this.converged = converged;
+        }
+
+        public Complex getValue() {
+            return value;
+        }
+
+        public double getErrorEstimate() {
+            return errorEstimate;
+        }
+
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public boolean isConverged() {
+            return converged;
+        }
+
+        @Override
+        public String toString() {
+            return description + " = " + value + " (" + evaluations + " avaliações, erro estimado "
+                    + String.format("%.2e", errorEstimate) + (converged ? "" : ", NÃO convergiu") + ")";
+        }
+    }
+
+    // ==============================
+    // CAMINHOS
+    // ==============================
+
+    /** Integral de f(z) dz no segmento de a até b (para a e b reais, a integral comum). */
+    public static Report segment(CompiledExpression f, Complex a, Complex b) {
+        Path path = line(a.getReal(), a.getImag(), b.getReal(), b.getImag());
+        return report("integral de " + a + " a " + b, integrate(f.newFrame(), path, 0, 1));
+    }
+
+    /** Integral de contorno de f(z) dz no círculo |z - center| = radius, sentido anti-horário. */
+    public static Report circle(CompiledExpression f, Complex center, double radius) {
+        Path path = circle(center.getReal(), center.getImag(), radius);
+        return report("contorno |z-(" + center + ")|=" + radius, integrate(f.newFrame(), path, 0, 2 * Math.PI));
+    }
+
+    /**
+     * Como {@link #segment(CompiledExpression, Complex, Complex)}, para o interpretador:
+     * z no slot 0 de {@code frame}, que é reaproveitado, e o valor em out[0..1], sem relatório.
+     */
+    static void segment(CompiledExpression.Frame frame, double ar, double ai, double br, double bi, double[] out) {
+        Partial p = integrate(frame, line(ar, ai, br, bi), 0, 1);
+        out[0] = p.re;
+        out[1] = p.im;
+    }
+
+    /** Como {@link #segment(CompiledExpression.Frame, double, double, double, double, double[])}, no círculo. */
+    static void circle(CompiledExpression.Frame frame, double cr, double ci, double radius, double[] out) {
+        Partial p = integrate(frame, circle(cr, ci, radius), 0, 2 * Math.PI);
+        out[0] = p.re;
+        out[1] = p.im;
+    }
+
+    private static Path line(double ar, double ai, double br, double bi) {
+        double dr = br - ar, di = bi - ai;
+        return new Path() {
+            @Override
+            public void point(double t, double[] out) {
+                out[0] = ar + t * dr;
+                out[1] = ai + t * di;
+                out[2] = dr;
+                out[3] = di;
+            }
+        };
+    }
+
+    private static Path circle(double cr, double ci, double radius) {
+        return new Path() {
+            @Override
+            public void point(double t, double[] out) {
+                double c = Math.cos(t), s = Math.sin(t);
+                out[0] = cr + radius * c;
+                out[1] = ci + radius * s;
+                // z'(t) = i * r * e^(it)
+                out[2] = -radius * s;
+                out[3] = radius * c;
+            }
+        };
+    }
+
+    // z(t) em out[0..1] e z'(t) em out[2..3]
+    private interface Path {
+        void point(double t, double[] out);
+    }
+
+    // ==============================
+    // NÚCLEO ADAPTATIVO
+    // ==============================
+    // O frame é usado pela raiz e pelas metades da esquerda; as da direita, que
+    // podem rodar em outra thread, recebem uma cópia
+    private static Partial integrate(CompiledExpression.Frame frame, Path path, double lo, double hi) {
+        // a regra no intervalo todo dá a escala para a tolerância relativa e é a
+        // própria regra da raiz, que não a calcula de novo
+        Partial whole = rule(path, frame, lo, hi);
+        double tolerance = Math.max(ABS_TOL, REL_TOL * Math.hypot(whole.re, whole.im));
+
+        AtomicLong budget = new AtomicLong(MAX_EVALUATIONS);
+        Segment root = new Segment(frame, path, lo, hi, tolerance, 0, budget);
+        root.precomputed = whole;
+        // a raiz roda na thread atual; só as metades divididas vão para o ForkJoinPool
+        return root.invoke();
+    }
+
+    private static Report report(String description, Partial p) {
+        return new Report(description, new Complex(p.re, p.im), p.error, p.evaluations, p.converged);
+    }
+
+    private static final class Partial {
+        double re, im, error;
+        long evaluations;
+        boolean converged = true;
+    }
+
+    private static final class Segment extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledExpression.Frame frame;
+        private final Path path;
+        private final double a, b, tolerance;
+        private final int depth;
+        private final AtomicLong budget;
+        // regra de Gauss–Kronrod já calculada neste intervalo, ou null
+        private Partial precomputed;
+
+        Segment(CompiledExpression.Frame frame, Path path, double a, double b, double tolerance, int depth,
+                AtomicLong budget) {
+            this.frame = frame;
+            this.path = path;
+            this.a = a;
+            this.b = b;
+            this.tolerance = tolerance;
+            this.depth = depth;
+            this.budget = budget;
+        }
+
+        @Override
+        protected Partial compute() {
+            Partial p = precomputed != null ? precomputed : rule(path, frame, a, b);
+            if (p.error <= tolerance)
+                return p;
+
+            double mid = 0.5 * (a + b);
+            boolean exhausted = budget.addAndGet(-30) < 0;
+            if (depth >= MAX_DEPTH || mid <= a || mid >= b || exhausted || !Double.isFinite(p.error)) {
+                p.converged = false;
+                return p;
+            }
+
+            // cada metade recebe tolerância / sqrt(2): os erros das partes não têm o
+            // mesmo sinal, então somam em quadratura e não linearmente
+            double childTolerance = tolerance * SQRT1_2;
+            Segment left = new Segment(frame, path, a, mid, childTolerance, depth + 1, budget);
+            Segment right = new Segment(frame.copy(), path, mid, b, childTolerance, depth + 1, budget);
+            right.fork();
+            Partial l = left.compute();
+            Partial r = right.join();
+
+            Partial sum = new Partial();
+            sum.re = l.re + r.re;
+            sum.im = l.im + r.im;
+            sum.error = l.error + r.error;
+            sum.evaluations = p.evaluations + l.evaluations + r.evaluations;
+            sum.converged = l.converged && r.converged;
+            return sum;
+        }
+    }
+
+    // Regra de Gauss–Kronrod em [x0, x1]. O erro segue a estimativa do QUADPACK:
+    // |K - G| reescalado por (200 |K - G| / resasc)^1.5, onde resasc mede a variação
+    // do integrando no intervalo.
+    private static Partial rule(Path path, CompiledExpression.Frame frame, double x0, double x1) {
+        double center = 0.5 * (x0 + x1);
+        double half = 0.5 * (x1 - x0);
+        double[] z = new double[4];
+        double[] vr = new double[15];
+        double[] vi = new double[15];
+        double[] w = new double[15];
+
+        double kr = 0, ki = 0, gr = 0, gi = 0, absSum = 0;
+        int n = 0;
+        for (int k = 0; k < XGK.length; k++) {
+            int signs = XGK[k] == 0 ? 1 : 2;
+            for (int s = 0; s < signs; s++) {
+                double t = center + (s == 0 ? half : -half) * XGK[k];
+                path.point(t, z);
+                frame.set(0, z[0], z[1]);
+                frame.run();
+                double fr = frame.getReal(), fi = frame.getImag();
+                // f(z(t)) * z'(t)
+                vr[n] = fr * z[2] - fi * z[3];
+                vi[n] = fr * z[3] + fi * z[2];
+                w[n] = WGK[k];
+
+                kr += WGK[k] * vr[n];
+                ki += WGK[k] * vi[n];
+                absSum += WGK[k] * Math.hypot(vr[n], vi[n]);
+                if (k % 2 == 1) {
+                    gr += WG[k / 2] * vr[n];
+                    gi += WG[k / 2] * vi[n];
+                }
+                n++;
+            }
+        }
+
+        double meanR = kr * 0.5, meanI = ki * 0.5;
+        double resasc = 0;
+        for (int k = 0; k < n; k++)
+            resasc += w[k] * Math.hypot(vr[k] - meanR, vi[k] - meanI);
+        resasc *= Math.abs(half);
+
+        double error = Math.hypot((kr - gr) * half, (ki - gi) * half);
+        if (resasc != 0 && error != 0)
+            error = resasc * Math.min(1, Math.pow(200 * error / resasc, 1.5));
+        // abaixo disso a diferença é só arredondamento
+        error = Math.max(error, 50 * Math.ulp(1.0) * absSum * Math.abs(half));
+
+        Partial p = new Partial();
+        p.re = kr * half;
+        p.im = ki * half;
+        p.error = error;
+        p.evaluations = 15;
+        return p;
+    }
+}
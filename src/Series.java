@@ -0,0 +1,194 @@
+// Series.java
+import java.util.stream.IntStream;
+
+/**
+ * Somatórios e produtórios de uma expressão compilada sobre um índice inteiro.
+ *
+ * O intervalo de índices é dividido em blocos de tamanho fixo. Cada bloco é
+ * somado com compensação de Neumaier (parte real e imaginária separadas), em
+ * paralelo quando o intervalo é grande, e os resultados parciais são combinados
+ * na ordem dos blocos. Como os blocos não dependem do número de threads, o
+ * resultado é o mesmo bit a bit em toda execução.
+ */
+public final class Series {
+
+    private static final int CHUNK = 1 << 14;
+    private static final long PARALLEL_THRESHOLD = 1L << 16;
+
+    private Series() {
+    }
+
+    /** Soma de f(k) para k = lo..hi; f tem o índice como único parâmetro. */
+    public static Complex sum(CompiledExpression f, long lo, long hi) {
+        double[] out = new double[2];
+        sum(f.newFrame(), lo, hi, out);
+        return new Complex(out[0], out[1]);
+    }
+
+    /** Produto de f(k) para k = lo..hi. */
+    public static Complex product(CompiledExpression f, long lo, long hi) {
+        double[] out = new double[2];
+        product(f.newFrame(), lo, hi, out);
+        return new Complex(out[0], out[1]);
+    }
+
+    /**
+     * Soma com o índice no slot 0 de {@code frame} e o resultado em out[0..1]. Um
+     * intervalo de um bloco só roda em sequência no próprio frame, sem alocar; os
+     * blocos de um intervalo maior usam cópias do frame (com os demais slots).
+     */
+    static void sum(CompiledExpression.Frame frame, long lo, long hi, double[] out) {
+        if (hi < lo) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+
+        int chunks = chunkCount(lo, hi);
+        if (chunks == 1) {
+            Neumaier re = new Neumaier(), im = new Neumaier();
+            sumChunk(frame, lo, hi, re, im);
+            out[0] = re.total();
+            out[1] = im.total();
+            return;
+        }
+
+        // por bloco: soma e compensação, real e imaginária
+        double[] sumRe = new double[chunks], compRe = new double[chunks];
+        double[] sumIm = new double[chunks], compIm = new double[chunks];
+
+        chunkStream(lo, hi, chunks).forEach(c -> {
+            Neumaier re = new Neumaier(), im = new Neumaier();
+            sumChunk(frame.copy(), lo + (long) c * CHUNK, chunkEnd(lo, hi, c), re, im);
+            sumRe[c] = re.sum;
+            compRe[c] = re.compensation;
+            sumIm[c] = im.sum;
+            compIm[c] = im.compensation;
+        });
+
+        Neumaier re = new Neumaier(), im = new Neumaier();
+        for (int c = 0; c < chunks; c++) {
+            re.add(sumRe[c]);
+            re.add(compRe[c]);
+            im.add(sumIm[c]);
+            im.add(compIm[c]);
+        }
+        out[0] = re.result();
+        out[1] = im.result();
+    }
+
+    /** Como {@link #sum(CompiledExpression.Frame, long, long, double[])}, para o produto. */
+    static void product(CompiledExpression.Frame frame, long lo, long hi, double[] out) {
+        if (hi < lo) {
+            out[0] = 1;
+            out[1] = 0;
+            return;
+        }
+
+        int chunks = chunkCount(lo, hi);
+        if (chunks == 1) {
+            productChunk(frame, lo, hi, out);
+            // combinado com 1 + 0i como no laço abaixo, que pode mudar o sinal de zero
+            double pr = out[0], pi = out[1];
+            out[0] = pr - 0 * pi;
+            out[1] = pi + 0 * pr;
+            return;
+        }
+
+        double[] partRe = new double[chunks], partIm = new double[chunks];
+
+        chunkStream(lo, hi, chunks).forEach(c -> {
+            double[] part = new double[2];
+            productChunk(frame.copy(), lo + (long) c * CHUNK, chunkEnd(lo, hi, c), part);
+            partRe[c] = part[0];
+            partIm[c] = part[1];
+        });
+
+        double pr = 1, pi = 0;
+        for (int c = 0; c < chunks; c++) {
+            double t = pr * partRe[c] - pi * partIm[c];
+            pi = pr * partIm[c] + pi * partRe[c];
+            pr = t;
+        }
+        out[0] = pr;
+        out[1] = pi;
+    }
+
+    private static void sumChunk(CompiledExpression.Frame frame, long from, long to, Neumaier re, Neumaier im) {
+        for (long k = from; k <= to; k++) {
+            frame.set(0, k, 0);
+            frame.run();
+            re.add(frame.getReal());
+            im.add(frame.getImag());
+        }
+    }
+
+    private static void productChunk(CompiledExpression.Frame frame, long from, long to, double[] out) {
+        double pr = 1, pi = 0;
+        for (long k = from; k <= to; k++) {
+            frame.set(0, k, 0);
+            frame.run();
+            double fr = frame.getReal(), fi = frame.getImag();
+            double t = pr * fr - pi * fi;
+            pi = pr * fi + pi * fr;
+            pr = t;
+        }
+        out[0] = pr;
+        out[1] = pi;
+    }
+
+    // ==============================
+    // AUXILIARES
+    // ==============================
+
+    /** Converte um limite de sum/prod em inteiro, ou falha se ele não for inteiro. */
+    static long integerBound(double re, double im, String name) {
+        if (im != 0 || re != Math.rint(re) || Math.abs(re) > 1e15)
+            throw new IllegalArgumentException("Os limites de " + name + " devem ser inteiros.");
+        return (long) re;
+    }
+
+    private static int chunkCount(long lo, long hi) {
+        long count = hi - lo + 1;
+        long chunks = (count + CHUNK - 1) / CHUNK;
+        if (count <= 0 || chunks > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Intervalo de índices grande demais.");
+        return (int) chunks;
+    }
+
+    private static long chunkEnd(long lo, long hi, int c) {
+        return Math.min(hi, lo + (long) (c + 1) * CHUNK - 1);
+    }
+
+    private static IntStream chunkStream(long lo, long hi, int chunks) {
+        IntStream s = IntStream.range(0, chunks);
+        return hi - lo + 1 >= PARALLEL_THRESHOLD ? s.parallel() : s;
+    }
+
+    // Soma compensada de Neumaier (variante de Kahan que também trata |x| > |soma|)
+    private static final class Neumaier {
+        double sum;
+        double compensation;
+
+        void add(double x) {
+            double t = sum + x;
+            if (Math.abs(sum) >= Math.abs(x))
+                compensation += (sum - t) + x;
+            else
+                compensation += (x - t) + sum;
+            sum = t;
+        }
+
+        double result() {
+            return sum + compensation;
+        }
+
+        // o mesmo que combinar este bloco sozinho, como no caso de vários blocos
+        double total() {
+            Neumaier t = new Neumaier();
+            t.add(sum);
+            t.add(compensation);
+            return t.result();
+        }
+    }
+}